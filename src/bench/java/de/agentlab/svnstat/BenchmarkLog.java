@@ -0,0 +1,150 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PropertyResourceBundle;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * A generated svn log shared by the benchmarks, as XML and as its paths. The log is generated in
+ * memory by the {@link LogGenerator} from a fixed seed, so the benchmarks need neither a repository
+ * nor network access.
+ * <p>
+ * The configuration is the default one, with the module patterns replaced by
+ * <code>modules</code> patterns of the form <code>/moduleN/</code>.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkLog {
+
+    @Param({ "10000" })
+    public int          commits;
+
+    @Param({ "20" })
+    public int          users;
+
+    @Param({ "5" })
+    public int          pathsPerCommit;
+
+    @Param({ "10" })
+    public int          modules;
+
+    public byte[]       xml;
+    public List<String> paths;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        configure(this.modules);
+        this.xml = generate(this.commits, this.users, this.pathsPerCommit, Math.max(this.modules, 1));
+        this.paths = new ArrayList<String>();
+        Stat stat = this.read();
+        CommitStore store = stat.getStore();
+        for (int i = 0; i < store.size(); i++) {
+            for (int j = 0; j < store.getFileCount(i); j++) {
+                this.paths.add(store.getPathDictionary().get(store.getFileId(i, j)));
+            }
+        }
+    }
+
+    public InputStream open() {
+        return new ByteArrayInputStream(this.xml);
+    }
+
+    /**
+     * Parse the log into a new {@link Stat}.
+     */
+    public Stat read() throws IOException {
+        Stat stat = new Stat();
+        try {
+            new LogReader(new ExclusionFilter(null)).read(this.open(), stat);
+        } catch (Exception e) {
+            throw new IOException(e.getMessage());
+        }
+        return stat;
+    }
+
+    /**
+     * Initialize the {@link Config} with the default properties and <code>modules</code> module
+     * patterns.
+     */
+    public static void configure(int modules) throws IOException {
+        StringBuilder properties = new StringBuilder();
+        BufferedReader reader =
+            new BufferedReader(
+                new InputStreamReader(Graph.class.getResourceAsStream("SvnStat.properties"), "ISO-8859-1"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("Module.")) {
+                    properties.append(line).append('\n');
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        for (int i = 0; i < modules; i++) {
+            properties.append("Module.module" + i + " = /module" + i + "/\n");
+        }
+        Config.init(new PropertyResourceBundle(new StringReader(properties.toString())));
+    }
+
+    /**
+     * Generate a log with the {@link LogGenerator}, from a fixed seed.
+     */
+    public static byte[] generate(int commits, int users, int pathsPerCommit, int modules) throws IOException {
+        LogGenerator generator = new LogGenerator();
+        generator.setRevisions(commits);
+        generator.setUsers(users);
+        generator.setPathsPerCommit(pathsPerCommit);
+        generator.setModules(modules);
+        generator.setSeed(42);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.write(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Delete a directory with the files in it.
+     */
+    public static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        dir.delete();
+    }
+
+}
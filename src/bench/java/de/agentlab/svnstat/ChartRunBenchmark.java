@@ -0,0 +1,124 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * A run of many charts with one chart backend, the four chart types in turn, like the charts of a
+ * report with many users. Run with <code>-prof gc</code> for the allocation of a whole run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ChartRunBenchmark {
+
+    @Param({ "1000" })
+    public int           charts;
+
+    @Param({ "jpeg", "svg" })
+    public String        backend;
+
+    private ChartBackend graph;
+    private String[]     xAxisLabels;
+    private String[]     legendLabels;
+    private double[][]   data;
+    private double[]     shares;
+    private File         dir;
+    private String       filename;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkLog.configure(0);
+        if (this.backend.equals("svg")) {
+            this.graph = new SvgGraph(Graph.parseConfig());
+        } else {
+            this.graph = new Graph(Graph.parseConfig());
+        }
+
+        int firstDay = DateUtil.toEpochDay("2010-01-01");
+        this.xAxisLabels = new String[60];
+        for (int i = 0; i < this.xAxisLabels.length; i++) {
+            this.xAxisLabels[i] = DateUtil.formatDate(firstDay + i);
+        }
+        this.legendLabels = new String[] { "added", "modified", "deleted", "replaced" };
+        this.data = new double[this.legendLabels.length][this.xAxisLabels.length];
+        this.shares = new double[this.legendLabels.length];
+        for (int i = 0; i < this.legendLabels.length; i++) {
+            for (int j = 0; j < this.xAxisLabels.length; j++) {
+                this.data[i][j] = (i * 7 + j * 13) % 11;
+            }
+            this.shares[i] = 100.0 / this.legendLabels.length;
+        }
+
+        this.dir = File.createTempFile("svnstat-bench", "");
+        this.dir.delete();
+        this.dir.mkdir();
+        this.filename = new File(this.dir, "chart." + this.graph.getExtension()).getPath();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkLog.delete(this.dir);
+    }
+
+    @Benchmark
+    public void run() throws Exception {
+        for (int i = 0; i < this.charts; i++) {
+            switch (i % 4) {
+                case 0:
+                    this.graph.stackedBarChart(
+                        850, 360, "Date", "Commits", this.xAxisLabels, "Commits", this.legendLabels, this.data,
+                        this.filename);
+                    break;
+                case 1:
+                    this.graph.lineChart(
+                        850, 360, "Date", "Commits", this.xAxisLabels, "Commits", new String[] { "Total" },
+                        new double[][] { this.data[0] }, -1, -1, this.filename);
+                    break;
+                case 2:
+                    this.graph.pieChart(850, 360, this.legendLabels, "Commits", this.shares, this.filename);
+                    break;
+                default:
+                    this.graph.verticalBarChart(
+                        850, 360, "Date", "Commits", this.xAxisLabels, "Commits", this.legendLabels, this.data,
+                        this.filename);
+                    break;
+            }
+        }
+    }
+
+}
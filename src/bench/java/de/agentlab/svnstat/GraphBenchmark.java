@@ -0,0 +1,138 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Rendering each chart type with the JPEG backend ({@link Graph}) and the SVG backend
+ * ({@link SvgGraph}), with the default sizes of the report. The size of each chart file is printed
+ * once per backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GraphBenchmark {
+
+    @Param({ "60" })
+    public int           dates;
+
+    @Param({ "5" })
+    public int           series;
+
+    @Param({ "jpeg", "svg" })
+    public String        backend;
+
+    private ChartBackend graph;
+    private String[]     xAxisLabels;
+    private String[]     legendLabels;
+    private double[][]   data;
+    private File         dir;
+    private String       filename;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkLog.configure(0);
+        if (this.backend.equals("svg")) {
+            this.graph = new SvgGraph(Graph.parseConfig());
+        } else {
+            this.graph = new Graph(Graph.parseConfig());
+        }
+
+        int firstDay = DateUtil.toEpochDay("2010-01-01");
+        this.xAxisLabels = new String[this.dates];
+        for (int i = 0; i < this.dates; i++) {
+            this.xAxisLabels[i] = DateUtil.formatDate(firstDay + i);
+        }
+        this.legendLabels = new String[this.series];
+        this.data = new double[this.series][this.dates];
+        for (int i = 0; i < this.series; i++) {
+            this.legendLabels[i] = "user" + i;
+            for (int j = 0; j < this.dates; j++) {
+                this.data[i][j] = (i * 7 + j * 13) % 11;
+            }
+        }
+
+        this.dir = File.createTempFile("svnstat-bench", "");
+        this.dir.delete();
+        this.dir.mkdir();
+        this.filename = new File(this.dir, "chart." + this.graph.getExtension()).getPath();
+
+        this.stackedBarChart();
+        System.out.println("stackedBarChart: " + new File(this.filename).length() + " bytes");
+        this.lineChart();
+        System.out.println("lineChart: " + new File(this.filename).length() + " bytes");
+        this.pieChart();
+        System.out.println("pieChart: " + new File(this.filename).length() + " bytes");
+        this.verticalBarChart();
+        System.out.println("verticalBarChart: " + new File(this.filename).length() + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkLog.delete(this.dir);
+    }
+
+    @Benchmark
+    public void stackedBarChart() throws Exception {
+        this.graph.stackedBarChart(
+            850, 360, "Date", "Commits", this.xAxisLabels, "Commits", this.legendLabels, this.data, this.filename);
+    }
+
+    @Benchmark
+    public void lineChart() throws Exception {
+        double[][] total = new double[][] { this.data[0] };
+        this.graph.lineChart(
+            850, 360, "Date", "Commits", this.xAxisLabels, "Commits", new String[] { "Total" }, total, -1, -1,
+            this.filename);
+    }
+
+    @Benchmark
+    public void pieChart() throws Exception {
+        double[] shares = new double[this.series];
+        for (int i = 0; i < this.series; i++) {
+            shares[i] = 100.0 / this.series;
+        }
+        this.graph.pieChart(850, 360, this.legendLabels, "Commits", shares, this.filename);
+    }
+
+    @Benchmark
+    public void verticalBarChart() throws Exception {
+        this.graph.verticalBarChart(
+            850, 360, "Date", "Commits", this.xAxisLabels, "Commits", this.legendLabels, this.data, this.filename);
+    }
+
+}
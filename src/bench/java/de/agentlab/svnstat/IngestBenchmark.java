@@ -0,0 +1,169 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Reading a log: parsing the XML with StAX, with JDOM and with the {@link LogTokenizer}, loading a
+ * snapshot, checking paths against the exclusions and adding records to a {@link Stat}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestBenchmark {
+
+    private SvnStat         svnStat;
+    private SvnStat         svnStatDom;
+    private ExclusionFilter exclusions;
+    private List<SvnRecord> records;
+    private File            dir;
+    private String          snapshot;
+    private File            logFile;
+
+    @Setup
+    public void setUp(BenchmarkLog log) throws IOException {
+        this.svnStat = createSvnStat(new String[] { "-r", "bench" });
+        this.svnStatDom = createSvnStat(new String[] { "-r", "bench", "-dom" });
+        // SvnStat.init() reads the default configuration; restore the module patterns of the log.
+        BenchmarkLog.configure(log.modules);
+
+        this.exclusions = new ExclusionFilter("/trunk/module0/.*,.*\\.tmp,/branches/.*,/trunk/.*/target/.*");
+
+        CommitStore store = log.read().getStore();
+        this.records = new ArrayList<SvnRecord>(store.size());
+        for (int i = 0; i < store.size(); i++) {
+            this.records.add(store.get(i));
+        }
+
+        this.dir = File.createTempFile("svnstat-bench", "");
+        this.dir.delete();
+        this.dir.mkdir();
+        this.snapshot = new File(this.dir, "log.svs").getPath();
+        Snapshot.write(this.snapshot, store, this.snapshot, 0);
+
+        this.logFile = new File(this.dir, "log.xml");
+        FileOutputStream out = new FileOutputStream(this.logFile);
+        try {
+            out.write(log.xml);
+        } finally {
+            out.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkLog.delete(this.dir);
+    }
+
+    private static SvnStat createSvnStat(String[] args) {
+        CLI cli = new CLI();
+        cli.parseOptions(args);
+        SvnStat result = new SvnStat();
+        result.init(cli);
+        return result;
+    }
+
+    @Benchmark
+    public Stat readXml(BenchmarkLog log) throws IOException {
+        Stat stat = new Stat();
+        this.svnStat.readXml(log.open(), stat, 0);
+        return stat;
+    }
+
+    @Benchmark
+    public Stat readXmlDom(BenchmarkLog log) throws IOException {
+        Stat stat = new Stat();
+        this.svnStatDom.readXml(log.open(), stat, 0);
+        return stat;
+    }
+
+    @Benchmark
+    public Stat readTokenizer() throws Exception {
+        Stat stat = new Stat();
+        new LogTokenizer(new ExclusionFilter(null)).read(this.logFile, stat);
+        return stat;
+    }
+
+    @Benchmark
+    public CommitStore loadSnapshot() throws IOException {
+        return Snapshot.load(this.snapshot).getStore();
+    }
+
+    @Benchmark
+    public int isExcluded(BenchmarkLog log) {
+        int result = 0;
+        for (int i = 0; i < log.paths.size(); i++) {
+            if (this.exclusions.isExcluded(log.paths.get(i))) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public SvnRecord classifyPaths() {
+        PathClassifier paths = new PathClassifier();
+        SvnRecord record = null;
+        for (int i = 0; i < this.records.size(); i++) {
+            SvnRecord source = this.records.get(i);
+            List<String> files = source.getFiles();
+            int modified = source.getAdded() + source.getModified();
+            int deleted = modified + source.getDeleted();
+            paths.clear();
+            for (int j = 0; j < files.size(); j++) {
+                String action = j < source.getAdded() ? "A" : j < modified ? "M" : j < deleted ? "D" : "R";
+                paths.add(action, files.get(j));
+            }
+            record = new SvnRecord();
+            paths.fill(record);
+        }
+        return record;
+    }
+
+    @Benchmark
+    public Stat addRecord() {
+        Stat stat = new Stat();
+        for (int i = 0; i < this.records.size(); i++) {
+            stat.addRecord(this.records.get(i));
+        }
+        return stat;
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Queries on a parsed log: building the aggregation cube and date index, commit and change counts
+ * per date and user, date ranges and module activity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    private Stat         stat;
+    private List<String> dates;
+    private List<String> users;
+    private String[][]   ranges;
+    private File         dir;
+
+    @Setup
+    public void setUp(BenchmarkLog log) throws IOException {
+        this.stat = log.read();
+        Collections.reverse(this.stat.getDates());
+        this.stat.getDateIndex();
+        this.dates = new ArrayList<String>(this.stat.getDates());
+        this.users = this.stat.getUsers();
+
+        // Windows of about a month, spread over the history.
+        this.ranges = new String[64][];
+        for (int i = 0; i < this.ranges.length; i++) {
+            int from = (int) ((long) i * this.dates.size() / this.ranges.length);
+            int to = Math.min(from + 8, this.dates.size() - 1);
+            this.ranges[i] = new String[] { this.dates.get(from), this.dates.get(to) };
+        }
+
+        this.dir = File.createTempFile("svnstat-bench", "");
+        this.dir.delete();
+        this.dir.mkdir();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkLog.delete(this.dir);
+    }
+
+    @Benchmark
+    public AggregationCube buildCube() {
+        return new AggregationCube(this.stat.getStore());
+    }
+
+    @Benchmark
+    public DateIndex buildDateIndex() {
+        return new DateIndex(this.stat.getStore(), this.stat.getCube());
+    }
+
+    @Benchmark
+    public int countCommits() {
+        int result = 0;
+        for (int i = 0; i < this.dates.size(); i++) {
+            for (int j = 0; j < this.users.size(); j++) {
+                result += this.stat.countCommits(this.dates.get(i), this.users.get(j));
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int getChanges() {
+        int result = 0;
+        for (int i = 0; i < this.dates.size(); i++) {
+            for (int j = 0; j < this.users.size(); j++) {
+                result += this.stat.getChanges(this.dates.get(i), this.users.get(j), "added");
+                result += this.stat.getChanges(this.dates.get(i), this.users.get(j), "deleted");
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int filterDates() {
+        int result = 0;
+        for (int i = 0; i < this.ranges.length; i++) {
+            result += this.stat.filterDates(this.ranges[i][0], this.ranges[i][1]).size();
+            result += this.stat.filterDates(null, this.ranges[i][1]).size();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Stat modulesPerUser() {
+        Stat window = this.stat.createWindow(this.dir.getPath());
+        for (int i = 0; i < this.users.size(); i++) {
+            window.modulesPerUser(null, null, this.users.get(i));
+        }
+        return window;
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.util.Arrays;
+
+
+/**
+ * Per (date, user) totals of a {@link CommitStore}: commits, added, modified, deleted and replaced
+ * files, and commits per hour of the day. The cube is built in a single pass over the store; all
+ * lookups are answered from the cube without looking at the commits again.
+ * <p>
+ * Only (date, user) pairs with at least one commit get a cell. The cells of a date are stored next
+ * to each other, sorted by user id, so a cell is found by a binary search over the few users
+ * committing on that date.
+ */
+public class AggregationCube {
+
+    public static final int ADDED    = 0;
+    public static final int MODIFIED = 1;
+    public static final int DELETED  = 2;
+    public static final int REPLACED = 3;
+
+    private int[]           dateCellStart;
+    private int[]           dateWeekday;
+    private int[]           cellUser;
+    private int[]           cellCommits;
+    private int[][]         cellChanges;
+    private int[]           cellHours;
+
+    public AggregationCube(CommitStore store) {
+        StringDictionary dates = store.getDateDictionary();
+        int userCount = store.getUserDictionary().size();
+
+        this.dateCellStart = new int[dates.size() + 1];
+        this.dateWeekday = new int[dates.size()];
+
+        int capacity = Math.max(dates.size(), 16);
+        this.cellUser = new int[capacity];
+        this.cellCommits = new int[capacity];
+        this.cellChanges = new int[4][capacity];
+        this.cellHours = new int[capacity * 24];
+
+        // The cell of each user on the current date, or -1.
+        int[] userCell = new int[userCount];
+        Arrays.fill(userCell, -1);
+
+        int cells = 0;
+        for (int dateId = 0; dateId < dates.size(); dateId++) {
+            this.dateCellStart[dateId] = cells;
+            this.dateWeekday[dateId] = DateUtil.dayOfWeek(DateUtil.toEpochDay(dates.get(dateId)));
+
+            IntList indexes = store.getIndexesByDate(dates.get(dateId));
+
+            // Collect the users of the date and give them cells in user id order.
+            IntList dateUsers = new IntList(indexes.size());
+            for (int i = 0; i < indexes.size(); i++) {
+                int userId = store.getUserId(indexes.get(i));
+                if (userCell[userId] == -1) {
+                    userCell[userId] = cells;
+                    dateUsers.add(userId);
+                }
+            }
+            int[] users = dateUsers.toArray();
+            Arrays.sort(users);
+            if (cells + users.length > this.cellUser.length) {
+                this.grow(Math.max(this.cellUser.length * 2, cells + users.length));
+            }
+            for (int i = 0; i < users.length; i++) {
+                userCell[users[i]] = cells + i;
+                this.cellUser[cells + i] = users[i];
+            }
+
+            for (int i = 0; i < indexes.size(); i++) {
+                int index = indexes.get(i);
+                int cell = userCell[store.getUserId(index)];
+                this.cellCommits[cell]++;
+                this.cellChanges[ADDED][cell] += store.getAdded(index);
+                this.cellChanges[MODIFIED][cell] += store.getModified(index);
+                this.cellChanges[DELETED][cell] += store.getDeleted(index);
+                this.cellChanges[REPLACED][cell] += store.getReplaced(index);
+
+                int secondOfDay = (int) (store.getTimestamp(index) % DateUtil.SECONDS_PER_DAY);
+                if (secondOfDay < 0) {
+                    secondOfDay += DateUtil.SECONDS_PER_DAY;
+                }
+                this.cellHours[cell * 24 + secondOfDay / 3600]++;
+            }
+
+            for (int i = 0; i < users.length; i++) {
+                userCell[users[i]] = -1;
+            }
+            cells += users.length;
+        }
+        this.dateCellStart[dates.size()] = cells;
+    }
+
+    private void grow(int capacity) {
+        this.cellUser = Arrays.copyOf(this.cellUser, capacity);
+        this.cellCommits = Arrays.copyOf(this.cellCommits, capacity);
+        for (int i = 0; i < this.cellChanges.length; i++) {
+            this.cellChanges[i] = Arrays.copyOf(this.cellChanges[i], capacity);
+        }
+        this.cellHours = Arrays.copyOf(this.cellHours, capacity * 24);
+    }
+
+    private int findCell(int dateId, int userId) {
+        if (dateId < 0 || userId < 0 || dateId >= this.dateWeekday.length) {
+            return -1;
+        }
+        int result =
+            Arrays.binarySearch(this.cellUser, this.dateCellStart[dateId], this.dateCellStart[dateId + 1], userId);
+        return result < 0 ? -1 : result;
+    }
+
+    public int getCommits(int dateId, int userId) {
+        int cell = this.findCell(dateId, userId);
+        return cell == -1 ? 0 : this.cellCommits[cell];
+    }
+
+    /**
+     * Return the number of commits of all users on a date.
+     */
+    public int getCommits(int dateId) {
+        int result = 0;
+        for (int cell = this.dateCellStart[dateId]; cell < this.dateCellStart[dateId + 1]; cell++) {
+            result += this.cellCommits[cell];
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of changed files of a user on a date.
+     * 
+     * @param type one of {@link #ADDED}, {@link #MODIFIED}, {@link #DELETED} and {@link #REPLACED}
+     */
+    public int getChanges(int dateId, int userId, int type) {
+        int cell = this.findCell(dateId, userId);
+        return cell == -1 ? 0 : this.cellChanges[type][cell];
+    }
+
+    /**
+     * Return the number of changed files of all users on a date.
+     */
+    public int getChanges(int dateId, int type) {
+        int result = 0;
+        for (int cell = this.dateCellStart[dateId]; cell < this.dateCellStart[dateId + 1]; cell++) {
+            result += this.cellChanges[type][cell];
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of commits of a user on a date within an hour of the day (UTC).
+     */
+    public int getCommitsPerHour(int dateId, int userId, int hour) {
+        int cell = this.findCell(dateId, userId);
+        return cell == -1 ? 0 : this.cellHours[cell * 24 + hour];
+    }
+
+    /**
+     * Return the ISO day of the week of a date, 1 for Monday up to 7 for Sunday.
+     */
+    public int getWeekday(int dateId) {
+        return this.dateWeekday[dateId];
+    }
+
+}
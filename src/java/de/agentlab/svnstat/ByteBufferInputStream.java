@@ -0,0 +1,55 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Input stream over the remaining bytes of a buffer.
+ */
+class ByteBufferInputStream extends InputStream {
+
+    private ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public int read() {
+        return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+    }
+
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!this.buffer.hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, this.buffer.remaining());
+        this.buffer.get(b, off, n);
+        return n;
+    }
+
+    public int available() {
+        return this.buffer.remaining();
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Maps byte sequences to dense int ids, so that values which occur again and again in a log are
+ * recognized without decoding them. Each id carries the string for its bytes, which only has to be
+ * built when the id is new.
+ */
+public class ByteDictionary {
+
+    private byte[]     bytes   = new byte[4096];
+    private int        used;
+    private int[]      offsets = new int[257];
+    private int[]      hashes  = new int[256];
+    private String[]   strings = new String[256];
+    private int        size;
+
+    /** Ids plus one, <code>0</code> marks a free slot. */
+    private int[]      table   = new int[512];
+
+    /** The bytes looked up last, copied from the buffer in one go. */
+    private byte[]     key     = new byte[256];
+    private ByteBuffer source;
+    private ByteBuffer view;
+
+    /**
+     * Return the id of the bytes between two positions of a buffer, adding them if they are not yet
+     * known. The string of a new id is <code>null</code> until it is set.
+     */
+    public int add(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length > this.key.length) {
+            this.key = new byte[Math.max(length, this.key.length * 2)];
+        }
+        if (buffer != this.source) {
+            this.source = buffer;
+            this.view = buffer.duplicate();
+        }
+        this.view.limit(end).position(start);
+        this.view.get(this.key, 0, length);
+
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + this.key[i];
+        }
+        int mask = this.table.length - 1;
+        int slot = mix(hash) & mask;
+        while (this.table[slot] != 0) {
+            int id = this.table[slot] - 1;
+            if (this.hashes[id] == hash && this.equals(id, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = this.size;
+        if (id == this.hashes.length) {
+            this.hashes = Arrays.copyOf(this.hashes, id * 2);
+            this.strings = Arrays.copyOf(this.strings, id * 2);
+            this.offsets = Arrays.copyOf(this.offsets, id * 2 + 1);
+        }
+        if (this.used + length > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.used + length));
+        }
+        System.arraycopy(this.key, 0, this.bytes, this.used, length);
+        this.used += length;
+        this.offsets[id + 1] = this.used;
+        this.hashes[id] = hash;
+        this.table[slot] = id + 1;
+        this.size++;
+
+        if (this.size * 2 > this.table.length) {
+            this.rehash();
+        }
+        return id;
+    }
+
+    public String getString(int id) {
+        return this.strings[id];
+    }
+
+    public void setString(int id, String value) {
+        this.strings[id] = value;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private boolean equals(int id, int length) {
+        int offset = this.offsets[id];
+        if (this.offsets[id + 1] - offset != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.bytes[offset + i] != this.key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        int[] table = new int[this.table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < this.size; id++) {
+            int slot = mix(this.hashes[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+        this.table = table;
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+}
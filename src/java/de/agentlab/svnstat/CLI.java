@@ -37,8 +37,8 @@ public class CLI {
     /**
      * Parse the vector of command line arguments into options and store these options in a HashMap. A
      * command line option must start with a dash ("-") and may have an argument (which must not start
-     * with a dash). Options without arguments are considered boolean. Note that it is not possible to
-     * provide a list of non-option arguments.
+     * with a dash unless it is a negative number). Options without arguments are considered boolean.
+     * Note that it is not possible to provide a list of non-option arguments.
      * 
      * @param argv the vector of command line arguments
      */
@@ -53,7 +53,7 @@ public class CLI {
                     // There may be an argument to this option.
                     String value = argv[i];
 
-                    if (!value.startsWith("-")) {
+                    if (!value.startsWith("-") || isNegativeNumber(value)) {
                         // argument
                         this.options.put(arg.substring(1), value);
                         i++;
@@ -69,6 +69,15 @@ public class CLI {
         }
     }
 
+    private static boolean isNegativeNumber(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
     /**
      * Return the options HashMap.
      * 
@@ -154,4 +163,14 @@ public class CLI {
         }
     }
 
+    public long getLongOption(String name, long defaultValue) {
+        String result = (String) this.options.get(name);
+
+        if (result != null) {
+            return Long.parseLong(result);
+        } else {
+            return defaultValue;
+        }
+    }
+
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.IOException;
+
+
+/**
+ * Draws the charts of a report into files. The data of the axis charts is indexed by data set first
+ * and by x value second. The backend is chosen with the <code>Chart.backend</code> property.
+ */
+public interface ChartBackend {
+
+    /**
+     * Return the extension of the chart files, without the dot.
+     */
+    String getExtension();
+
+    /**
+     * Set the metrics the time to write the files is added to.
+     */
+    void setMetrics(Metrics metrics);
+
+    void stackedBarChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        String filename) throws Exception;
+
+    /**
+     * @param yAxisMinValue the lowest value of the y axis or <code>-1</code> to choose the scale
+     *        from the data
+     * @param yAxisIncrement the distance between the values of the y axis, used together with
+     *        <code>yAxisMinValue</code>
+     */
+    void lineChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        long yAxisMinValue,
+        long yAxisIncrement,
+        String filename) throws Exception;
+
+    void pieChart(int width, int height, String[] labels, String title, double[] data, String filename)
+        throws Exception;
+
+    void verticalBarChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        String filename) throws Exception;
+
+    /**
+     * Finish the files written by the backend. Called once all charts are drawn.
+     */
+    void close() throws IOException;
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Renders charts with a {@link ChartBackend}, either directly in the calling thread or on a bounded
+ * pool of worker threads. The chart data must not be changed after it has been passed to the
+ * renderer.
+ * <p>
+ * When the work queue is full, the calling thread renders the chart itself, so the number of
+ * charts waiting in memory stays bounded. Call {@link #await()} to wait for all submitted charts.
+ */
+public class ChartRenderer {
+
+    private ChartBackend       graph;
+    private Metrics            metrics = new Metrics();
+    private ThreadPoolExecutor executor;
+    private List<Future<?>>    pending = new ArrayList<Future<?>>();
+
+    /**
+     * @param graph the backend used to render the charts
+     * @param threads the number of worker threads; with <code>1</code> (or less) charts are rendered
+     *        in the calling thread
+     */
+    public ChartRenderer(ChartBackend graph, int threads) {
+        this.graph = graph;
+        if (threads > 1) {
+            this.executor =
+                new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(threads * 4),
+                    new DaemonThreadFactory(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    /**
+     * Set the metrics the rendering times are added to, for this renderer and its graph.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        this.graph.setMetrics(metrics);
+    }
+
+    /**
+     * Return the extension of the chart files, without the dot.
+     */
+    public String getExtension() {
+        return this.graph.getExtension();
+    }
+
+    public void stackedBarChart(
+        final int width,
+        final int height,
+        final String xAxisTitle,
+        final String yAxisTitle,
+        final String[] xAxisLabels,
+        final String title,
+        final String[] legendLabels,
+        final double[][] data,
+        final String filename) {
+
+        this.submit(new Runnable() {
+
+            public void run() {
+                Metrics.Timer timer = metrics.start("Graph.stackedBarChart");
+                try {
+                    graph.stackedBarChart(
+                        width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels, data, filename);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    timer.stop();
+                }
+            }
+        });
+    }
+
+    public void lineChart(
+        final int width,
+        final int height,
+        final String xAxisTitle,
+        final String yAxisTitle,
+        final String[] xAxisLabels,
+        final String title,
+        final String[] legendLabels,
+        final double[][] data,
+        final long yAxisMinValue,
+        final long yAxisIncrement,
+        final String filename) {
+
+        this.submit(new Runnable() {
+
+            public void run() {
+                Metrics.Timer timer = metrics.start("Graph.lineChart");
+                try {
+                    graph.lineChart(
+                        width,
+                        height,
+                        xAxisTitle,
+                        yAxisTitle,
+                        xAxisLabels,
+                        title,
+                        legendLabels,
+                        data,
+                        yAxisMinValue,
+                        yAxisIncrement,
+                        filename);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    timer.stop();
+                }
+            }
+        });
+    }
+
+    public void pieChart(
+        final int width,
+        final int height,
+        final String[] labels,
+        final String title,
+        final double[] data,
+        final String filename) {
+
+        this.submit(new Runnable() {
+
+            public void run() {
+                Metrics.Timer timer = metrics.start("Graph.pieChart");
+                try {
+                    graph.pieChart(width, height, labels, title, data, filename);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    timer.stop();
+                }
+            }
+        });
+    }
+
+    public void verticalBarChart(
+        final int width,
+        final int height,
+        final String xAxisTitle,
+        final String yAxisTitle,
+        final String[] xAxisLabels,
+        final String title,
+        final String[] legendLabels,
+        final double[][] data,
+        final String filename) {
+
+        this.submit(new Runnable() {
+
+            public void run() {
+                Metrics.Timer timer = metrics.start("Graph.verticalBarChart");
+                try {
+                    graph.verticalBarChart(
+                        width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels, data, filename);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    timer.stop();
+                }
+            }
+        });
+    }
+
+    private void submit(Runnable job) {
+        if (this.executor == null) {
+            job.run();
+            return;
+        }
+        Future<?> future = this.executor.submit(job);
+        synchronized (this.pending) {
+            this.pending.add(future);
+        }
+    }
+
+    /**
+     * Wait until all charts submitted so far are written.
+     */
+    public void await() throws InterruptedException {
+        while (true) {
+            List<Future<?>> futures;
+            synchronized (this.pending) {
+                if (this.pending.isEmpty()) {
+                    return;
+                }
+                futures = new ArrayList<Future<?>>(this.pending);
+                this.pending.clear();
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for all charts, stop the worker threads and close the backend.
+     */
+    public void shutdown() throws InterruptedException, IOException {
+        this.await();
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+        this.graph.close();
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private int count;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "svnstat-render-" + ++this.count);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+
+/**
+ * The state saved between incremental runs: the parsed commits, the log they were read from and
+ * the exclusions they were read with. The checkpoint is kept in the output directory. A run in
+ * incremental mode only reads the revisions above {@link #getLastRevision()} from the log and then
+ * adds the saved commits after the new ones. This gives the same result as reading the whole log
+ * only if the log lists the newest revisions first, as <code>svn log</code> does by default. For a
+ * log with ascending revisions, such as the output of <code>svn log -r 1:HEAD</code>, no checkpoint
+ * is saved, see {@link #isNewestFirst(CommitStore)}.
+ * <p>
+ * The checkpoint holds the commits, not the aggregates computed from them: the report also needs
+ * the paths of each commit, for the module activity. {@link #addTo(Stat)} adds every saved commit
+ * again, and the aggregation cube and date index are then built from all commits, as in a full
+ * run. An incremental run saves the parsing of the old revisions, not the aggregation.
+ */
+public class Checkpoint {
+
+    public static final String FILENAME = "svnstat.checkpoint";
+
+    private static final int   MAGIC    = 0x53565343;
+    private static final int   VERSION  = 3;
+
+    private CommitStore        store;
+
+    private Checkpoint(CommitStore store) {
+        this.store = store;
+    }
+
+    public int getLastRevision() {
+        return this.store.getLastRevision();
+    }
+
+    /**
+     * Add the saved commits to a {@link Stat}, after the commits read in this run.
+     */
+    public void addTo(Stat stat) {
+        for (int i = 0; i < this.store.size(); i++) {
+            stat.addRecord(this.store.get(i));
+        }
+    }
+
+    /**
+     * Check that the revisions of a store do not ascend anywhere, so that the commits of a later
+     * run can be put in front of them.
+     */
+    public static boolean isNewestFirst(CommitStore store) {
+        for (int i = 1; i < store.size(); i++) {
+            if (store.getRevision(i - 1) < store.getRevision(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Load the checkpoint of an output directory.
+     * 
+     * @param repository the repository URL or log file of this run
+     * @param exclude the exclusions of this run, may be <code>null</code>
+     * 
+     * @return the checkpoint or <code>null</code> if there is no checkpoint, it cannot be read or it
+     *         was written for a different log or with different exclusions
+     */
+    public static Checkpoint load(String dir, String repository, String exclude) {
+        File file = new File(dir, FILENAME);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    System.out.println("Ignoring checkpoint of unknown format: " + file);
+                    return null;
+                }
+                String savedSource = CommitStore.readString(in);
+                if (!savedSource.equals(getSource(repository))) {
+                    System.out.println("Ignoring checkpoint written for " + savedSource + ": " + file);
+                    return null;
+                }
+                String savedExclude = in.readBoolean() ? CommitStore.readString(in) : null;
+                if (savedExclude == null ? exclude != null : !savedExclude.equals(exclude)) {
+                    System.out.println("Ignoring checkpoint written with different exclusions: " + file);
+                    return null;
+                }
+                return new Checkpoint(CommitStore.readFrom(in));
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Save the commits of a {@link Stat} as the checkpoint of an output directory. Nothing is saved
+     * if the commits are not listed newest first.
+     * 
+     * @param repository the repository URL or log file the commits were read from
+     */
+    public static void save(String dir, Stat stat, String repository, String exclude) throws IOException {
+        if (!isNewestFirst(stat.getStore())) {
+            System.out.println("Not saving a checkpoint: the log does not list the newest revisions first");
+            return;
+        }
+        new File(dir).mkdirs();
+        File file = new File(dir, FILENAME);
+        File tmp = new File(dir, FILENAME + ".tmp");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            CommitStore.writeString(out, getSource(repository));
+            out.writeBoolean(exclude != null);
+            if (exclude != null) {
+                CommitStore.writeString(out, exclude);
+            }
+            stat.getStore().writeTo(out);
+        } finally {
+            out.close();
+        }
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot replace checkpoint " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot write checkpoint " + file);
+        }
+    }
+
+    /**
+     * Return the canonical path of a log file, or the repository URL as given.
+     */
+    private static String getSource(String repository) throws IOException {
+        File file = new File(repository);
+        return file.isFile() ? file.getCanonicalPath() : repository;
+    }
+
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Column store for the commits of a log. Users, dates and paths are kept once in dictionaries and
+ * referenced by id; all other values of a commit are stored in primitive arrays indexed by the
+ * position of the commit in the store. The file lists of all commits share one array of path ids,
+ * with <code>fileOffsets[i]</code> pointing to the first file of commit <code>i</code>.
+ * <p>
+ * {@link SvnRecord} objects are only created on demand, by {@link #get(int)} and the list views.
+ */
+public class CommitStore {
+
+    private StringDictionary users       = new StringDictionary();
+    private StringDictionary dates       = new StringDictionary();
+    private StringDictionary paths       = new StringDictionary();
+
+    private int              size;
+    private int[]            revisions   = new int[1024];
+    private long[]           timestamps  = new long[1024];
+    private int[]            userIds     = new int[1024];
+    private int[]            dateIds     = new int[1024];
+    private int[]            added       = new int[1024];
+    private int[]            modified    = new int[1024];
+    private int[]            deleted     = new int[1024];
+    private int[]            replaced    = new int[1024];
+    private int[]            fileOffsets = new int[1025];
+    private int[]            files       = new int[4096];
+
+    private List<IntList>    byDate      = new ArrayList<IntList>();
+
+    private String[]         timeCache   = new String[DateUtil.SECONDS_PER_DAY];
+
+    public CommitStore() {
+    }
+
+    /**
+     * Create a store from complete columns, as read from a {@link Snapshot}. The arrays are used
+     * as they are; <code>fileOffsets</code> must hold <code>size + 1</code> entries.
+     */
+    CommitStore(
+        StringDictionary users,
+        StringDictionary dates,
+        StringDictionary paths,
+        int size,
+        int[] revisions,
+        long[] timestamps,
+        int[] userIds,
+        int[] dateIds,
+        int[] added,
+        int[] modified,
+        int[] deleted,
+        int[] replaced,
+        int[] fileOffsets,
+        int[] files) {
+
+        this.users = users;
+        this.dates = dates;
+        this.paths = paths;
+        this.size = size;
+        this.revisions = revisions;
+        this.timestamps = timestamps;
+        this.userIds = userIds;
+        this.dateIds = dateIds;
+        this.added = added;
+        this.modified = modified;
+        this.deleted = deleted;
+        this.replaced = replaced;
+        this.fileOffsets = fileOffsets;
+        this.files = files;
+
+        for (int i = 0; i < dates.size(); i++) {
+            this.byDate.add(new IntList(4));
+        }
+        for (int i = 0; i < size; i++) {
+            this.byDate.get(dateIds[i]).add(i);
+        }
+    }
+
+    /**
+     * Add a record to the store.
+     * 
+     * @return the index of the commit
+     */
+    public int add(SvnRecord record) {
+        if (this.size == this.revisions.length) {
+            this.grow();
+        }
+        int index = this.size;
+
+        int dateId = this.dates.add(record.getDate());
+        if (dateId == this.byDate.size()) {
+            this.byDate.add(new IntList(4));
+        }
+        this.byDate.get(dateId).add(index);
+
+        this.revisions[index] = record.getRevision();
+        this.timestamps[index] =
+            (long) DateUtil.toEpochDay(record.getDate()) * DateUtil.SECONDS_PER_DAY
+                + DateUtil.toSecondOfDay(record.getTime());
+        this.userIds[index] = this.users.add(record.getUser());
+        this.dateIds[index] = dateId;
+        this.added[index] = record.getAdded();
+        this.modified[index] = record.getModified();
+        this.deleted[index] = record.getDeleted();
+        this.replaced[index] = record.getReplaced();
+
+        List<String> recordFiles = record.getFiles();
+        int offset = this.fileOffsets[index];
+        if (offset + recordFiles.size() > this.files.length) {
+            this.files =
+                Arrays.copyOf(this.files, Math.max(this.files.length * 2, offset + recordFiles.size() + 1024));
+        }
+        for (int i = 0; i < recordFiles.size(); i++) {
+            this.files[offset + i] = this.paths.add(recordFiles.get(i));
+        }
+        this.fileOffsets[index + 1] = offset + recordFiles.size();
+
+        this.size++;
+        return index;
+    }
+
+    private void grow() {
+        int capacity = Math.max(this.revisions.length * 2, 1024);
+        this.revisions = Arrays.copyOf(this.revisions, capacity);
+        this.timestamps = Arrays.copyOf(this.timestamps, capacity);
+        this.userIds = Arrays.copyOf(this.userIds, capacity);
+        this.dateIds = Arrays.copyOf(this.dateIds, capacity);
+        this.added = Arrays.copyOf(this.added, capacity);
+        this.modified = Arrays.copyOf(this.modified, capacity);
+        this.deleted = Arrays.copyOf(this.deleted, capacity);
+        this.replaced = Arrays.copyOf(this.replaced, capacity);
+        this.fileOffsets = Arrays.copyOf(this.fileOffsets, capacity + 1);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public StringDictionary getUserDictionary() {
+        return this.users;
+    }
+
+    public StringDictionary getDateDictionary() {
+        return this.dates;
+    }
+
+    public StringDictionary getPathDictionary() {
+        return this.paths;
+    }
+
+    public int getRevision(int index) {
+        return this.revisions[index];
+    }
+
+    /**
+     * Return the time of a commit in seconds since 1970-01-01T00:00:00Z.
+     */
+    public long getTimestamp(int index) {
+        return this.timestamps[index];
+    }
+
+    public int getUserId(int index) {
+        return this.userIds[index];
+    }
+
+    public int getDateId(int index) {
+        return this.dateIds[index];
+    }
+
+    public String getUser(int index) {
+        return this.users.get(this.userIds[index]);
+    }
+
+    public String getDate(int index) {
+        return this.dates.get(this.dateIds[index]);
+    }
+
+    public String getTime(int index) {
+        int secondOfDay = (int) (this.timestamps[index] % DateUtil.SECONDS_PER_DAY);
+        if (secondOfDay < 0) {
+            secondOfDay += DateUtil.SECONDS_PER_DAY;
+        }
+        String result = this.timeCache[secondOfDay];
+        if (result == null) {
+            result = DateUtil.formatTime(secondOfDay);
+            this.timeCache[secondOfDay] = result;
+        }
+        return result;
+    }
+
+    public int getAdded(int index) {
+        return this.added[index];
+    }
+
+    public int getModified(int index) {
+        return this.modified[index];
+    }
+
+    public int getDeleted(int index) {
+        return this.deleted[index];
+    }
+
+    public int getReplaced(int index) {
+        return this.replaced[index];
+    }
+
+    public int getFileCount(int index) {
+        return this.fileOffsets[index + 1] - this.fileOffsets[index];
+    }
+
+    /**
+     * Return the path id of a file of a commit.
+     * 
+     * @param index the index of the commit
+     * @param file the position of the file within the commit
+     */
+    public int getFileId(int index, int file) {
+        return this.files[this.fileOffsets[index] + file];
+    }
+
+    /**
+     * Return the indexes of the commits of a date, in the order they were added.
+     * 
+     * @return the indexes or <code>null</code> if there is no commit for the date
+     */
+    public IntList getIndexesByDate(String date) {
+        int dateId = this.dates.lookup(date);
+        if (dateId == -1) {
+            return null;
+        }
+        return this.byDate.get(dateId);
+    }
+
+    /**
+     * Return the highest revision of the store.
+     * 
+     * @return the revision or <code>0</code> if the store is empty
+     */
+    public int getLastRevision() {
+        int result = 0;
+        for (int i = 0; i < this.size; i++) {
+            result = Math.max(result, this.revisions[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Write the dictionaries and the commits of the store.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        writeDictionary(out, this.users);
+        writeDictionary(out, this.dates);
+        writeDictionary(out, this.paths);
+
+        out.writeInt(this.size);
+        for (int i = 0; i < this.size; i++) {
+            out.writeInt(this.revisions[i]);
+            out.writeLong(this.timestamps[i]);
+            out.writeInt(this.userIds[i]);
+            out.writeInt(this.dateIds[i]);
+            out.writeInt(this.added[i]);
+            out.writeInt(this.modified[i]);
+            out.writeInt(this.deleted[i]);
+            out.writeInt(this.replaced[i]);
+            out.writeInt(this.getFileCount(i));
+            for (int j = this.fileOffsets[i]; j < this.fileOffsets[i + 1]; j++) {
+                out.writeInt(this.files[j]);
+            }
+        }
+    }
+
+    /**
+     * Read a store written by {@link #writeTo(DataOutput)}.
+     */
+    public static CommitStore readFrom(DataInput in) throws IOException {
+        CommitStore store = new CommitStore();
+        readDictionary(in, store.users);
+        readDictionary(in, store.dates);
+        readDictionary(in, store.paths);
+        for (int i = 0; i < store.dates.size(); i++) {
+            store.byDate.add(new IntList(4));
+        }
+
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            if (store.size == store.revisions.length) {
+                store.grow();
+            }
+            store.revisions[i] = in.readInt();
+            store.timestamps[i] = in.readLong();
+            store.userIds[i] = in.readInt();
+            store.dateIds[i] = in.readInt();
+            store.added[i] = in.readInt();
+            store.modified[i] = in.readInt();
+            store.deleted[i] = in.readInt();
+            store.replaced[i] = in.readInt();
+
+            int fileCount = in.readInt();
+            int offset = store.fileOffsets[i];
+            if (offset + fileCount > store.files.length) {
+                store.files = Arrays.copyOf(store.files, Math.max(store.files.length * 2, offset + fileCount));
+            }
+            for (int j = 0; j < fileCount; j++) {
+                store.files[offset + j] = in.readInt();
+            }
+            store.fileOffsets[i + 1] = offset + fileCount;
+
+            store.byDate.get(store.dateIds[i]).add(i);
+            store.size++;
+        }
+        return store;
+    }
+
+    private static void writeDictionary(DataOutput out, StringDictionary dictionary) throws IOException {
+        out.writeInt(dictionary.size());
+        for (int i = 0; i < dictionary.size(); i++) {
+            writeString(out, dictionary.get(i));
+        }
+    }
+
+    private static void readDictionary(DataInput in, StringDictionary dictionary) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            dictionary.add(readString(in));
+        }
+    }
+
+    /**
+     * Write a string as its length and its UTF-8 bytes. Unlike {@link DataOutput#writeUTF(String)},
+     * this has no limit of 65535 bytes.
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutput, String)}.
+     */
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Create a record for a commit of the store.
+     */
+    public SvnRecord get(int index) {
+        SvnRecord record = new SvnRecord();
+        record.setRevision(this.revisions[index]);
+        record.setDate(this.getDate(index));
+        record.setTime(this.getTime(index));
+        record.setUser(this.getUser(index));
+        record.setAdded(this.added[index]);
+        record.setModified(this.modified[index]);
+        record.setDeleted(this.deleted[index]);
+        record.setReplaced(this.replaced[index]);
+        for (int i = this.fileOffsets[index]; i < this.fileOffsets[index + 1]; i++) {
+            record.addFile(this.paths.get(this.files[i]));
+        }
+        return record;
+    }
+
+    /**
+     * Return the records of a date as a list view. Records are created when they are accessed.
+     * 
+     * @return the records; the list is empty if there is no commit for the date
+     */
+    public List<SvnRecord> getRecordsByDate(String date) {
+        final IntList indexes = this.getIndexesByDate(date);
+        if (indexes == null) {
+            return Collections.emptyList();
+        }
+        return new AbstractList<SvnRecord>() {
+
+            public SvnRecord get(int index) {
+                return CommitStore.this.get(indexes.get(index));
+            }
+
+            public int size() {
+                return indexes.size();
+            }
+        };
+    }
+
+}
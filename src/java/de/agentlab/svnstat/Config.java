@@ -18,6 +18,7 @@
 package de.agentlab.svnstat;
 
 import java.util.Enumeration;
+import java.util.MissingResourceException;
 import java.util.PropertyResourceBundle;
 
 
@@ -38,7 +39,7 @@ public class Config {
     }
 
     public static String getProperty(String key, String defaultValue) {
-        String result = config.getString(key);
+        String result = getString(key);
         if (result != null) {
             return result;
         } else {
@@ -47,14 +48,26 @@ public class Config {
     }
 
     public static int getIntProperty(String key, int defaultValue) {
-        String result = config.getString(key);
+        String result = getString(key);
         if (result != null) {
-            return Integer.parseInt(result);
+            return Integer.parseInt(result.trim());
         } else {
             return defaultValue;
         }
     }
 
+    /**
+     * Return a property or <code>null</code> if a configuration file given with
+     * <code>-config</code> does not define it.
+     */
+    private static String getString(String key) {
+        try {
+            return config.getString(key);
+        } catch (MissingResourceException e) {
+            return null;
+        }
+    }
+
     public static Enumeration<String> getKeys() {
         return config.getKeys();
     }
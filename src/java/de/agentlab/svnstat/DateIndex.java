@@ -0,0 +1,172 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * The dates of a {@link CommitStore} in chronological order, with cumulative sums of the commits,
+ * added and deleted files up to each date, in total and per user. A date range is found by a binary
+ * search over the days since 1970-01-01, and the totals of a range are the difference of two sums,
+ * so both take O(log n) regardless of the length of the history.
+ * <p>
+ * Dates are addressed by their position in the index. Ranges are given as a position
+ * <code>from</code> (inclusive) and <code>to</code> (exclusive). The sums of a user are computed on
+ * first use.
+ */
+public class DateIndex {
+
+    private static final int COMMITS = 0;
+    private static final int ADDED   = 1;
+    private static final int DELETED = 2;
+
+    private AggregationCube  cube;
+    private int[]            days;
+    private int[]            dateIds;
+    private List<String>     dates;
+    private int[][]          totalSums;
+    private int[][][]        userSums;
+
+    public DateIndex(CommitStore store, AggregationCube cube) {
+        StringDictionary dateDictionary = store.getDateDictionary();
+        int size = dateDictionary.size();
+        this.cube = cube;
+
+        // Sort the date ids by day; the day and the date id fit into one long.
+        long[] keys = new long[size];
+        for (int dateId = 0; dateId < size; dateId++) {
+            keys[dateId] = ((long) DateUtil.toEpochDay(dateDictionary.get(dateId)) << 32) | dateId;
+        }
+        Arrays.sort(keys);
+
+        this.days = new int[size];
+        this.dateIds = new int[size];
+        String[] dates = new String[size];
+        for (int i = 0; i < size; i++) {
+            this.days[i] = (int) (keys[i] >> 32);
+            this.dateIds[i] = (int) keys[i];
+            dates[i] = dateDictionary.get(this.dateIds[i]);
+        }
+        this.dates = Arrays.asList(dates);
+
+        this.totalSums = new int[3][size + 1];
+        for (int i = 0; i < size; i++) {
+            this.totalSums[COMMITS][i + 1] = this.totalSums[COMMITS][i] + cube.getCommits(this.dateIds[i]);
+            this.totalSums[ADDED][i + 1] =
+                this.totalSums[ADDED][i] + cube.getChanges(this.dateIds[i], AggregationCube.ADDED);
+            this.totalSums[DELETED][i + 1] =
+                this.totalSums[DELETED][i] + cube.getChanges(this.dateIds[i], AggregationCube.DELETED);
+        }
+        this.userSums = new int[store.getUserDictionary().size()][][];
+    }
+
+    public int size() {
+        return this.days.length;
+    }
+
+    public String getDate(int position) {
+        return this.dates.get(position);
+    }
+
+    public int getDateId(int position) {
+        return this.dateIds[position];
+    }
+
+    /**
+     * Return the dates from position <code>from</code> up to, but not including, <code>to</code>.
+     */
+    public List<String> getDates(int from, int to) {
+        return this.dates.subList(from, Math.max(from, to));
+    }
+
+    /**
+     * Return the position of the first date on or after a date, or of the first date if the date is
+     * <code>null</code>.
+     */
+    public int from(String date) {
+        if (date == null) {
+            return 0;
+        }
+        return this.search(DateUtil.toEpochDayOnOrAfter(date));
+    }
+
+    /**
+     * Return the position after the last date on or before a date, or the size of the index if the
+     * date is <code>null</code>.
+     */
+    public int to(String date) {
+        if (date == null) {
+            return this.days.length;
+        }
+        return this.search(DateUtil.toEpochDayOnOrBefore(date) + 1);
+    }
+
+    /**
+     * Return the position of the first date on or after a day.
+     */
+    private int search(int day) {
+        int result = Arrays.binarySearch(this.days, day);
+        return result < 0 ? -result - 1 : result;
+    }
+
+    public int getCommits(int from, int to) {
+        return this.sum(this.totalSums[COMMITS], from, to);
+    }
+
+    public int getAdded(int from, int to) {
+        return this.sum(this.totalSums[ADDED], from, to);
+    }
+
+    public int getDeleted(int from, int to) {
+        return this.sum(this.totalSums[DELETED], from, to);
+    }
+
+    public int getCommits(int userId, int from, int to) {
+        return this.sum(this.getUserSums(userId)[COMMITS], from, to);
+    }
+
+    public int getAdded(int userId, int from, int to) {
+        return this.sum(this.getUserSums(userId)[ADDED], from, to);
+    }
+
+    public int getDeleted(int userId, int from, int to) {
+        return this.sum(this.getUserSums(userId)[DELETED], from, to);
+    }
+
+    private int sum(int[] sums, int from, int to) {
+        return to > from ? sums[to] - sums[from] : 0;
+    }
+
+    private synchronized int[][] getUserSums(int userId) {
+        if (this.userSums[userId] == null) {
+            int[][] sums = new int[3][this.days.length + 1];
+            for (int i = 0; i < this.days.length; i++) {
+                int dateId = this.dateIds[i];
+                sums[COMMITS][i + 1] = sums[COMMITS][i] + this.cube.getCommits(dateId, userId);
+                sums[ADDED][i + 1] = sums[ADDED][i] + this.cube.getChanges(dateId, userId, AggregationCube.ADDED);
+                sums[DELETED][i + 1] =
+                    sums[DELETED][i] + this.cube.getChanges(dateId, userId, AggregationCube.DELETED);
+            }
+            this.userSums[userId] = sums;
+        }
+        return this.userSums[userId];
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+/**
+ * Conversions between the date and time strings of the svn log (<code>yyyy-MM-dd</code> and
+ * <code>HH:mm:ss</code>, both UTC) and plain numbers: days since 1970-01-01 and seconds of the day.
+ */
+public class DateUtil {
+
+    public static final int SECONDS_PER_DAY = 86400;
+
+    /**
+     * Return the number of days between 1970-01-01 and a date of the form <code>yyyy-MM-dd</code>.
+     */
+    public static int toEpochDay(String date) {
+        int year = parse(date, 0, 4);
+        int month = parse(date, 5, 7);
+        int day = parse(date, 8, 10);
+        return toEpochDay(year, month, day);
+    }
+
+    public static int toEpochDay(int year, int month, int day) {
+        // Days from civil, counting years from March so that the leap day comes last.
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Return the first day on or after a date of the form <code>yyyy-MM-dd</code>. Month and day may
+     * be out of range, as in <code>0000-00-00</code>; the result is then the first valid day that
+     * does not sort before the date.
+     */
+    public static int toEpochDayOnOrAfter(String date) {
+        int year = parseDatePart(date, 0, 4);
+        int month = parseDatePart(date, 5, 7);
+        int day = parseDatePart(date, 8, 10);
+        if (month < 1) {
+            return toEpochDay(year, 1, 1);
+        }
+        if (month > 12) {
+            return toEpochDay(year + 1, 1, 1);
+        }
+        if (day < 1) {
+            return toEpochDay(year, month, 1);
+        }
+        if (day > daysInMonth(year, month)) {
+            return toEpochDay(year, month, daysInMonth(year, month)) + 1;
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * Return the last day on or before a date of the form <code>yyyy-MM-dd</code>. Month and day may
+     * be out of range, as in <code>9999-99-99</code>; the result is then the last valid day that does
+     * not sort after the date.
+     */
+    public static int toEpochDayOnOrBefore(String date) {
+        int year = parseDatePart(date, 0, 4);
+        int month = parseDatePart(date, 5, 7);
+        int day = parseDatePart(date, 8, 10);
+        if (month < 1) {
+            return toEpochDay(year, 1, 1) - 1;
+        }
+        if (month > 12) {
+            return toEpochDay(year, 12, 31);
+        }
+        if (day < 1) {
+            return toEpochDay(year, month, 1) - 1;
+        }
+        if (day > daysInMonth(year, month)) {
+            return toEpochDay(year, month, daysInMonth(year, month));
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return toEpochDay(month == 12 ? year + 1 : year, month == 12 ? 1 : month + 1, 1) - toEpochDay(year, month, 1);
+    }
+
+    /**
+     * Return the date of the form <code>yyyy-MM-dd</code> for a number of days since 1970-01-01.
+     */
+    public static String formatDate(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder result = new StringBuilder(10);
+        append(result, year, 4).append('-');
+        append(result, month, 2).append('-');
+        append(result, day, 2);
+        return result.toString();
+    }
+
+    /**
+     * Return the ISO day of the week, 1 for Monday up to 7 for Sunday.
+     */
+    public static int dayOfWeek(int epochDay) {
+        // 1970-01-01 was a Thursday.
+        int result = (epochDay + 3) % 7;
+        if (result < 0) {
+            result += 7;
+        }
+        return result + 1;
+    }
+
+    /**
+     * Return the number of seconds since midnight for a time of the form <code>HH:mm:ss</code>.
+     */
+    public static int toSecondOfDay(String time) {
+        return parse(time, 0, 2) * 3600 + parse(time, 3, 5) * 60 + parse(time, 6, 8);
+    }
+
+    /**
+     * Return the time of the form <code>HH:mm:ss</code> for a number of seconds since midnight.
+     */
+    public static String formatTime(int secondOfDay) {
+        StringBuilder result = new StringBuilder(8);
+        append(result, secondOfDay / 3600, 2).append(':');
+        append(result, secondOfDay / 60 % 60, 2).append(':');
+        append(result, secondOfDay % 60, 2);
+        return result.toString();
+    }
+
+    private static int parse(String value, int begin, int end) {
+        int result = 0;
+        for (int i = begin; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid date or time: " + value);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static int parseDatePart(String date, int begin, int end) {
+        if (date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            throw new NumberFormatException("Invalid date: " + date);
+        }
+        return parse(date, begin, end);
+    }
+
+    private static StringBuilder append(StringBuilder buffer, int value, int width) {
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            buffer.append('0');
+        }
+        return buffer.append(digits);
+    }
+
+}
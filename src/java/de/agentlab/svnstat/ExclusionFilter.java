@@ -0,0 +1,287 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+
+/**
+ * Matches paths against the exclusion patterns of the <code>-e</code> option. A path is excluded if
+ * one of the patterns matches the whole path, as with {@link String#matches(String)}.
+ * <p>
+ * The patterns are compiled once. Patterns without any regular expression syntax are looked up in a
+ * set. Patterns that start with a literal prefix are stored in a prefix trie, so they are only tried
+ * for paths that start with that prefix, and paths that share no prefix with any pattern are
+ * rejected after a few characters. Patterns that are tried together are combined into a single
+ * alternation unless they use back references, named groups or the comments flag.
+ */
+public class ExclusionFilter {
+
+    private static final String META     = "\\[](){}.*+?^$|";
+
+    private Set<String>         literals = new HashSet<String>();
+    private Node                root     = new Node();
+    private Pattern[]           unprefixed;
+    private boolean             empty    = true;
+
+    /**
+     * @param exclude comma-separated list of regular expressions, may be <code>null</code>
+     * 
+     * @throws java.util.regex.PatternSyntaxException if one of the expressions is invalid
+     */
+    public ExclusionFilter(String exclude) {
+        List<String> others = new ArrayList<String>();
+
+        if (exclude != null) {
+            for (String regex : exclude.split(",")) {
+                this.empty = false;
+                Pattern.compile(regex);
+
+                String text = literalText(regex);
+                String prefix = literalPrefix(regex);
+                if (text != null) {
+                    this.literals.add(text);
+                } else if (prefix.length() > 0) {
+                    this.root.insert(prefix).regexes.add(regex);
+                } else {
+                    others.add(regex);
+                }
+            }
+        }
+
+        this.unprefixed = combine(others);
+        this.root.compile();
+    }
+
+    public boolean isEmpty() {
+        return this.empty;
+    }
+
+    public boolean isExcluded(String path) {
+        if (this.empty) {
+            return false;
+        }
+        if (this.literals.contains(path)) {
+            return true;
+        }
+
+        Node node = this.root;
+        for (int i = 0; i < path.length() && node != null; i++) {
+            node = node.child(path.charAt(i));
+            if (node != null && matchesAny(node.patterns, path)) {
+                return true;
+            }
+        }
+
+        return matchesAny(this.unprefixed, path);
+    }
+
+    private static boolean matchesAny(Pattern[] patterns, String path) {
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i].matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compile a list of expressions into as few patterns as possible. Expressions with back
+     * references keep their own pattern because combining them would renumber their groups, and
+     * expressions with named groups keep theirs because two of them may use the same name. In
+     * comments mode, a <code>#</code> comment would swallow the parenthesis that closes the
+     * expression in the alternation, so expressions that set the comments flag keep theirs as well.
+     */
+    private static Pattern[] combine(List<String> regexes) {
+        List<Pattern> result = new ArrayList<Pattern>();
+        StringBuilder combined = new StringBuilder();
+        int count = 0;
+
+        for (String regex : regexes) {
+            if (hasBackReference(regex) || hasNamedGroup(regex) || hasCommentsFlag(regex)) {
+                result.add(Pattern.compile(regex));
+            } else {
+                if (count > 0) {
+                    combined.append('|');
+                }
+                combined.append("(?:").append(regex).append(')');
+                count++;
+            }
+        }
+        if (count > 0) {
+            result.add(Pattern.compile(combined.toString()));
+        }
+        return result.toArray(new Pattern[result.size()]);
+    }
+
+    private static boolean hasBackReference(String regex) {
+        for (int i = 0; i < regex.length() - 1; i++) {
+            if (regex.charAt(i) == '\\') {
+                char next = regex.charAt(i + 1);
+                if ((next >= '1' && next <= '9') || next == 'k') {
+                    return true;
+                }
+                i++;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasNamedGroup(String regex) {
+        for (int i = 0; i < regex.length() - 3; i++) {
+            if (regex.charAt(i) == '\\') {
+                i++;
+            } else if (regex.startsWith("(?<", i) && Character.isLetter(regex.charAt(i + 3))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check for an inline flag group that mentions <code>x</code>, such as <code>(?x)</code>,
+     * <code>(?ix:...)</code> or <code>(?-x)</code>.
+     */
+    private static boolean hasCommentsFlag(String regex) {
+        for (int i = 0; i < regex.length() - 2; i++) {
+            if (regex.charAt(i) == '\\') {
+                i++;
+            } else if (regex.startsWith("(?", i)) {
+                int end = i + 2;
+                boolean comments = false;
+                while (end < regex.length() && (Character.isLetter(regex.charAt(end)) || regex.charAt(end) == '-')) {
+                    comments |= regex.charAt(end) == 'x';
+                    end++;
+                }
+                if (comments && end < regex.length() && (regex.charAt(end) == ')' || regex.charAt(end) == ':')) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the literal text every match of the expression must start with. Escaped punctuation
+     * counts as literal text. A character followed by a quantifier is not part of the prefix, and
+     * expressions containing an alternation have no prefix at all.
+     */
+    static String literalPrefix(String regex) {
+        StringBuilder prefix = new StringBuilder();
+        scanLiteral(regex, prefix);
+        return prefix.toString();
+    }
+
+    /**
+     * Return the text matched by an expression without any regular expression syntax.
+     * 
+     * @return the unescaped text or <code>null</code> if the expression is not a plain literal
+     */
+    static String literalText(String regex) {
+        StringBuilder text = new StringBuilder();
+        if (scanLiteral(regex, text) == regex.length()) {
+            return text.toString();
+        }
+        return null;
+    }
+
+    /**
+     * Collect the leading literal characters of an expression.
+     * 
+     * @return the index at which the literal part ends
+     */
+    private static int scanLiteral(String regex, StringBuilder literal) {
+        if (regex.indexOf('|') != -1) {
+            return 0;
+        }
+
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    literal.append(regex.charAt(i + 1));
+                    i += 2;
+                    continue;
+                }
+                break;
+            }
+            if (META.indexOf(c) != -1) {
+                if ((c == '*' || c == '?' || c == '{') && literal.length() > 0) {
+                    literal.setLength(literal.length() - 1);
+                }
+                break;
+            }
+            literal.append(c);
+            i++;
+        }
+        return i;
+    }
+
+    private static class Node {
+
+        private char[]       keys     = new char[0];
+        private Node[]       children = new Node[0];
+        private List<String> regexes  = new ArrayList<String>();
+        private Pattern[]    patterns;
+
+        Node child(char c) {
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i] == c) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        Node insert(String prefix) {
+            Node node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                char c = prefix.charAt(i);
+                Node next = node.child(c);
+                if (next == null) {
+                    next = new Node();
+                    int length = node.keys.length;
+                    char[] keys = new char[length + 1];
+                    Node[] children = new Node[length + 1];
+                    System.arraycopy(node.keys, 0, keys, 0, length);
+                    System.arraycopy(node.children, 0, children, 0, length);
+                    keys[length] = c;
+                    children[length] = next;
+                    node.keys = keys;
+                    node.children = children;
+                }
+                node = next;
+            }
+            return node;
+        }
+
+        void compile() {
+            this.patterns = combine(this.regexes);
+            this.regexes = null;
+            for (int i = 0; i < this.children.length; i++) {
+                this.children[i].compile();
+            }
+        }
+    }
+
+}
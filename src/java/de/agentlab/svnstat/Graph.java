@@ -24,12 +24,13 @@ import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.util.Enumeration;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.jCharts.Chart;
 import org.jCharts.axisChart.AxisChart;
-import org.jCharts.axisChart.customRenderers.axisValue.renderers.ValueLabelPosition;
-import org.jCharts.axisChart.customRenderers.axisValue.renderers.ValueLabelRenderer;
 import org.jCharts.chartData.AxisChartDataSet;
 import org.jCharts.chartData.DataSeries;
 import org.jCharts.chartData.PieChartDataSet;
@@ -52,9 +53,84 @@ import org.jCharts.types.ChartType;
 import org.jCharts.types.PieLabelType;
 
 
-public class Graph {
+/**
+ * Chart backend that draws the charts with jCharts and writes them as JPEG images.
+ */
+public class Graph implements ChartBackend {
+
+    private static final String         DEFAULT_FONT = "Georgia Negreta cursiva";
+
+    private Paint[]                     paints;
+    private Metrics                     metrics      = new Metrics();
+
+    // Styling shared by all charts of a type. jCharts only reads these while drawing, so they are
+    // built once and used by all render threads. LegendProperties is not shared: the chart sets
+    // its size on it.
+    private ChartProperties             chartProperties;
+    private AxisProperties              stackedBarAxisProperties;
+    private AxisProperties              lineAxisProperties;
+    private AxisProperties              verticalBarAxisProperties;
+    private StackedBarChartProperties   stackedBarChartProperties;
+    private LineChartProperties         lineChartProperties;
+    private ClusteredBarChartProperties clusteredBarChartProperties;
+    private PieChart2DProperties        pieChart2DProperties;
+
+    private ChartFont                   axisScaleFont;
+    private ChartFont                   axisTitleFont;
+    private ChartStroke                 gridStroke;
+
+    /**
+     * Create the graph and its styling. The font is read from <code>Chart.font</code>.
+     * 
+     * @param paints the colors of the data sets; the array is copied
+     */
+    public Graph(Paint[] paints) {
+        this.paints = paints.clone();
+
+        String font = Config.getProperty("Chart.font", DEFAULT_FONT);
+        this.axisScaleFont = new ChartFont(new Font(font, Font.PLAIN, 10), Color.black);
+        this.axisTitleFont = new ChartFont(new Font(font, Font.PLAIN, 12), Color.black);
+        this.gridStroke =
+            new ChartStroke(
+                new BasicStroke(
+                    0.5f,
+                    0,
+                    0,
+                    1f,
+                    new float[] { 0.5f, 0.5f, 1f, 0.5f },
+                    0.5f),
+                Color.BLACK);
+
+        this.chartProperties = new ChartProperties();
+        this.chartProperties.setTitleFont(new ChartFont(new Font(font, Font.PLAIN, 14), Color.black));
+
+        this.stackedBarAxisProperties = this.createAxisProperties(false);
+        this.lineAxisProperties = this.createAxisProperties(false);
+        this.verticalBarAxisProperties = this.createAxisProperties(true);
+
+        this.stackedBarChartProperties = new StackedBarChartProperties();
+        this.stackedBarChartProperties.setShowOutlinesFlag(false);
+
+        Stroke[] strokes = { LineChartProperties.DEFAULT_LINE_STROKE };
+        Shape[] shapes = { PointChartProperties.SHAPE_DIAMOND };
+        this.lineChartProperties = new LineChartProperties(strokes, shapes);
+
+        this.clusteredBarChartProperties = new ClusteredBarChartProperties();
+
+        this.pieChart2DProperties = new PieChart2DProperties();
+        this.pieChart2DProperties.setPieLabelType(PieLabelType.VALUE_LABELS);
+    }
 
-    public static List paints = new AutoList();
+    public String getExtension() {
+        return "jpg";
+    }
+
+    /**
+     * Set the metrics the time to encode the images is added to.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
 
     public void stackedBarChart(
         int width,
@@ -67,31 +143,6 @@ public class Graph {
         double[][] data,
         String filename) throws Exception {
 
-        LegendProperties legendProperties = new LegendProperties();
-        ChartProperties chartProperties = new ChartProperties();
-        AxisProperties axisProperties = new AxisProperties(false);
-
-        ChartFont axisScaleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 10), Color.black);
-        axisProperties.setXAxisLabelsAreVertical(true);
-        axisProperties.getXAxisProperties().setScaleChartFont(axisScaleFont);
-        axisProperties.getYAxisProperties().setScaleChartFont(axisScaleFont);
-
-        ChartFont axisTitleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 12), Color.black);
-        axisProperties.getXAxisProperties().setAxisTitleChartFont(axisTitleFont);
-        axisProperties.getYAxisProperties().setAxisTitleChartFont(axisTitleFont);
-
-        ChartFont titleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 14), Color.black);
-        chartProperties.setTitleFont(titleFont);
-
-        this.showGrid(axisProperties);
-
-        ValueLabelRenderer valueLabelRenderer = new ValueLabelRenderer(false, false, true, -1);
-        valueLabelRenderer.setValueLabelPosition(ValueLabelPosition.ON_TOP);
-        valueLabelRenderer.useVerticalLabels(false);
-
-        StackedBarChartProperties stackedBarChartProperties = new StackedBarChartProperties();
-        stackedBarChartProperties.setShowOutlinesFlag(false);
-
         IAxisDataSeries dataSeries = new DataSeries(xAxisLabels, xAxisTitle, yAxisTitle, title);
 
         dataSeries.addIAxisPlotDataSet(
@@ -100,10 +151,13 @@ public class Graph {
                 legendLabels,
                 this.getPaints(legendLabels.length),
                 ChartType.BAR_STACKED,
-                stackedBarChartProperties));
+                this.stackedBarChartProperties));
 
-        AxisChart axisChart = new AxisChart(dataSeries, chartProperties, axisProperties, legendProperties, width, height);
-        JPEGEncoder.encode(axisChart, 1.0f, new FileOutputStream(filename));
+        AxisChart axisChart =
+            new AxisChart(
+                dataSeries, this.chartProperties, this.stackedBarAxisProperties, new LegendProperties(), width,
+                height);
+        this.encode(axisChart, filename);
 
     }
 
@@ -120,84 +174,38 @@ public class Graph {
         long yAxisIncrement,
         String filename) throws Exception {
 
-        LegendProperties legendProperties = new LegendProperties();
-        ChartProperties chartProperties = new ChartProperties();
-        AxisProperties axisProperties = new AxisProperties(false);
-
-        ChartFont axisScaleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 10), Color.black);
-        axisProperties.setXAxisLabelsAreVertical(true);
-        axisProperties.getXAxisProperties().setScaleChartFont(axisScaleFont);
-        axisProperties.getYAxisProperties().setScaleChartFont(axisScaleFont);
-
-        ChartFont axisTitleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 12), Color.black);
-        axisProperties.getXAxisProperties().setAxisTitleChartFont(axisTitleFont);
-        axisProperties.getYAxisProperties().setAxisTitleChartFont(axisTitleFont);
+        AxisProperties axisProperties = this.lineAxisProperties;
 
         // If yAxisIncrement <= 0, then org.jCharts.properties.DataAxisProperties.setUserDefinedScale will throw a
         // org.jCharts.properties.PropertyException ("The Axis Increment can not be a negative value or zero.").
         if (yAxisMinValue != -1 && yAxisIncrement > 0) {
+            axisProperties = this.createAxisProperties(false);
             DataAxisProperties dataAxisProperties = (DataAxisProperties) axisProperties.getYAxisProperties();
             dataAxisProperties.setUserDefinedScale(yAxisMinValue, yAxisIncrement);
         }
 
-        ChartFont titleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 14), Color.black);
-        chartProperties.setTitleFont(titleFont);
-
-        this.showGrid(axisProperties);
-
-        ValueLabelRenderer valueLabelRenderer = new ValueLabelRenderer(false, false, true, -1);
-        valueLabelRenderer.setValueLabelPosition(ValueLabelPosition.ON_TOP);
-        valueLabelRenderer.useVerticalLabels(false);
-
-        Stroke[] strokes = { LineChartProperties.DEFAULT_LINE_STROKE };
-        Shape[] shapes = { PointChartProperties.SHAPE_DIAMOND };
-        LineChartProperties lineChartProperties = new LineChartProperties(strokes, shapes);
-
         IAxisDataSeries dataSeries = new DataSeries(xAxisLabels, xAxisTitle, yAxisTitle, title);
 
         Paint[] color = new Paint[] { Color.BLUE };
         dataSeries.addIAxisPlotDataSet(
-            new AxisChartDataSet(data, legendLabels, color, ChartType.LINE, lineChartProperties));
+            new AxisChartDataSet(data, legendLabels, color, ChartType.LINE, this.lineChartProperties));
 
-        AxisChart axisChart = new AxisChart(dataSeries, chartProperties, axisProperties, legendProperties, width, height);
-        JPEGEncoder.encode(axisChart, 1.0f, new FileOutputStream(filename));
+        AxisChart axisChart =
+            new AxisChart(dataSeries, this.chartProperties, axisProperties, new LegendProperties(), width, height);
+        this.encode(axisChart, filename);
 
     }
 
     public void pieChart(
         int width, int height, String[] labels, String title, double[] data, String filename) throws Exception {
 
-        LegendProperties legendProperties = new LegendProperties();
-        ChartProperties chartProperties = new ChartProperties();
-        AxisProperties axisProperties = new AxisProperties(false);
-
-        ChartFont axisScaleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 10), Color.black);
-        axisProperties.setXAxisLabelsAreVertical(true);
-        axisProperties.getXAxisProperties().setScaleChartFont(axisScaleFont);
-        axisProperties.getYAxisProperties().setScaleChartFont(axisScaleFont);
-
-        ChartFont axisTitleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 12), Color.black);
-        axisProperties.getXAxisProperties().setAxisTitleChartFont(axisTitleFont);
-        axisProperties.getYAxisProperties().setAxisTitleChartFont(axisTitleFont);
-
-        ChartFont titleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 14), Color.black);
-        chartProperties.setTitleFont(titleFont);
-
-        this.showGrid(axisProperties);
-
-        ValueLabelRenderer valueLabelRenderer = new ValueLabelRenderer(false, false, true, -1);
-        valueLabelRenderer.setValueLabelPosition(ValueLabelPosition.ON_TOP);
-        valueLabelRenderer.useVerticalLabels(false);
-
-        PieChart2DProperties pieChart2DProperties = new PieChart2DProperties();
-        pieChart2DProperties.setPieLabelType(PieLabelType.VALUE_LABELS);
-
         PieChartDataSet pieChartDataSet =
-            new PieChartDataSet(title, data, labels, this.getPaints(labels.length), pieChart2DProperties);
+            new PieChartDataSet(title, data, labels, this.getPaints(labels.length), this.pieChart2DProperties);
 
-        PieChart2D pieChart2D = new PieChart2D(pieChartDataSet, legendProperties, chartProperties, width, height);
+        PieChart2D pieChart2D =
+            new PieChart2D(pieChartDataSet, new LegendProperties(), this.chartProperties, width, height);
 
-        JPEGEncoder.encode(pieChart2D, 1.0f, new FileOutputStream(filename));
+        this.encode(pieChart2D, filename);
 
     }
 
@@ -212,10 +220,6 @@ public class Graph {
         double[][] data,
         String filename) throws Exception {
 
-        LegendProperties legendProperties = new LegendProperties();
-        ChartProperties chartProperties = new ChartProperties();
-        ClusteredBarChartProperties clusteredBarChartProperties = new ClusteredBarChartProperties();
-
         DataSeries dataSeries = new DataSeries(xAxisLabels, xAxisTitle, yAxisTitle, title);
 
         AxisChartDataSet axisChartDataSet =
@@ -224,69 +228,82 @@ public class Graph {
                 legendLabels,
                 getPaints(legendLabels.length),
                 ChartType.BAR_CLUSTERED,
-                clusteredBarChartProperties);
+                this.clusteredBarChartProperties);
 
         dataSeries.addIAxisPlotDataSet(axisChartDataSet);
 
-        AxisProperties axisProperties = new AxisProperties(true);
-
-        ChartFont axisScaleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 10), Color.black);
-        axisProperties.setXAxisLabelsAreVertical(true);
-        axisProperties.getXAxisProperties().setScaleChartFont(axisScaleFont);
-        axisProperties.getYAxisProperties().setScaleChartFont(axisScaleFont);
-
-        ChartFont axisTitleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 12), Color.black);
-        axisProperties.getXAxisProperties().setAxisTitleChartFont(axisTitleFont);
-        axisProperties.getYAxisProperties().setAxisTitleChartFont(axisTitleFont);
-
-        ChartFont titleFont = new ChartFont(new Font("Georgia Negreta cursiva", Font.PLAIN, 14), Color.black);
-        chartProperties.setTitleFont(titleFont);
+        AxisChart axisChart =
+            new AxisChart(
+                dataSeries, this.chartProperties, this.verticalBarAxisProperties, new LegendProperties(), width,
+                height);
 
-        this.showGrid(axisProperties);
+        this.encode(axisChart, filename);
 
-        AxisChart axisChart =
-            new AxisChart(dataSeries, chartProperties, axisProperties, legendProperties, width, height);
+    }
 
-        JPEGEncoder.encode(axisChart, 1.0f, new FileOutputStream(filename));
+    public void close() {
+        // Each chart is a file of its own.
+    }
 
+    /**
+     * Draw the chart and write it as JPEG image.
+     */
+    private void encode(Chart chart, String filename) throws Exception {
+        Metrics.Timer timer = this.metrics.start("Graph.encode");
+        OutputStream out = new FileOutputStream(filename);
+        try {
+            JPEGEncoder.encode(chart, 1.0f, out);
+        } finally {
+            out.close();
+            timer.stop();
+        }
     }
 
-    private void showGrid(AxisProperties axisProperties) {
-        ChartStroke stroke =
-            new ChartStroke(
-                new BasicStroke(
-                    0.5f,
-                    0,
-                    0,
-                    1f,
-                    new float[] { 0.5f, 0.5f, 1f, 0.5f },
-                    0.5f),
-                Color.BLACK);
-        axisProperties.getXAxisProperties().setGridLineChartStroke(stroke);
+    /**
+     * Create the axis styling: fonts, vertical labels of the x axis and the grid.
+     */
+    private AxisProperties createAxisProperties(boolean isPlotHorizontal) {
+        AxisProperties axisProperties = new AxisProperties(isPlotHorizontal);
+        axisProperties.setXAxisLabelsAreVertical(true);
+        axisProperties.getXAxisProperties().setScaleChartFont(this.axisScaleFont);
+        axisProperties.getYAxisProperties().setScaleChartFont(this.axisScaleFont);
+        axisProperties.getXAxisProperties().setAxisTitleChartFont(this.axisTitleFont);
+        axisProperties.getYAxisProperties().setAxisTitleChartFont(this.axisTitleFont);
+        axisProperties.getXAxisProperties().setGridLineChartStroke(this.gridStroke);
         axisProperties.getXAxisProperties().setShowGridLines(AxisTypeProperties.GRID_LINES_ONLY_WITH_LABELS);
-        axisProperties.getYAxisProperties().setGridLineChartStroke(stroke);
+        axisProperties.getYAxisProperties().setGridLineChartStroke(this.gridStroke);
         axisProperties.getYAxisProperties().setShowGridLines(AxisTypeProperties.GRID_LINES_ONLY_WITH_LABELS);
+        return axisProperties;
     }
 
     private Paint[] getPaints(int count) {
         Paint[] result = new Paint[count];
-        for (int i = 0; i < count; i++) {
-            Object paint = paints.get(i);
-            if (paint instanceof Paint) {
-                result[i] = (Paint) paints.get(i);
-            }
-        }
+        System.arraycopy(this.paints, 0, result, 0, Math.min(count, this.paints.length));
         return result;
     }
 
-    public static void parseConfig() {
+    /**
+     * Read the colors of the data sets from the <code>Color.&lt;index&gt;</code> entries of the
+     * configuration. Indexes without a color are left <code>null</code>.
+     */
+    public static Paint[] parseConfig() {
+        Map<Integer, Paint> colors = new HashMap<Integer, Paint>();
+        int count = 0;
         for (Enumeration<String> e = Config.getKeys(); e.hasMoreElements();) {
             String key = e.nextElement();
             if (key.startsWith("Color")) {
                 String indexStr = key.substring(key.indexOf(".") + 1);
-                paints.set(Integer.parseInt(indexStr), Color.decode(Config.getProperty(key)));
+                int index = Integer.parseInt(indexStr);
+                colors.put(Integer.valueOf(index), Color.decode(Config.getProperty(key)));
+                count = Math.max(count, index + 1);
             }
         }
+
+        Paint[] result = new Paint[count];
+        for (Map.Entry<Integer, Paint> entry : colors.entrySet()) {
+            result[entry.getKey().intValue()] = entry.getValue();
+        }
+        return result;
     }
 
 }
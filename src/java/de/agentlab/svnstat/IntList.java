@@ -0,0 +1,61 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.util.Arrays;
+
+
+/**
+ * Growable array of primitive ints.
+ */
+public class IntList {
+
+    private int[] values;
+    private int   size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int capacity) {
+        this.values = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int value) {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.size * 2);
+        }
+        this.values[this.size++] = value;
+    }
+
+    public int get(int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.values[index];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(this.values, this.size);
+    }
+
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Chart backend that draws no charts but writes their data to one JSON file per report directory,
+ * {@value #DATA_FILE}. The report pages draw the charts in the browser with the bundled script
+ * {@value #SCRIPT_FILE}, which is copied next to the data file.
+ * <p>
+ * The data file is written while the charts come in and finished by {@link #close()}. It holds the
+ * palette and one entry per chart, named like the chart file without its extension:
+ * 
+ * <pre>
+ * {"colors":["#00ff00",...],"charts":{
+ * "alice_commits":{"type":"stacked","width":850,"height":360,"title":"Commits by alice",
+ *   "xTitle":"Date","yTitle":"Commits","legend":["alice"],"labels":["2014-01-01",...],
+ *   "data":[[3,...]]},
+ * ...}}
+ * </pre>
+ * 
+ * A chart with the same x axis labels as an earlier chart names that chart in <code>labelsOf</code>
+ * instead of repeating the labels. A data row that is mostly zero is written as
+ * <code>{"length":n,"index":[...],"values":[...]}</code> with only its other values. Line charts
+ * may have <code>yMin</code> and <code>yIncrement</code>; pie charts have one data row and no axis
+ * titles.
+ */
+public class JsonGraph implements ChartBackend {
+
+    public static final String       DATA_FILE   = "charts.json";
+    public static final String       SCRIPT_FILE = "charts.js";
+
+    private String[]                 colors;
+    private Metrics                  metrics     = new Metrics();
+    private Map<String, DataFile>    files       = new HashMap<String, DataFile>();
+
+    /**
+     * @param paints the colors of the data sets
+     */
+    public JsonGraph(Paint[] paints) {
+        this.colors = new String[paints.length];
+        for (int i = 0; i < paints.length; i++) {
+            this.colors[i] = paints[i] instanceof Color ? toHex((Color) paints[i]) : null;
+        }
+    }
+
+    public String getExtension() {
+        return "json";
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void stackedBarChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        String filename) throws IOException {
+
+        this.write("stacked", width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels, data, -1, -1,
+            filename);
+    }
+
+    public void lineChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        long yAxisMinValue,
+        long yAxisIncrement,
+        String filename) throws IOException {
+
+        this.write("line", width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels, data,
+            yAxisMinValue, yAxisIncrement, filename);
+    }
+
+    public void pieChart(int width, int height, String[] labels, String title, double[] data, String filename)
+        throws IOException {
+
+        this.write("pie", width, height, null, null, null, title, labels, new double[][] { data }, -1, -1, filename);
+    }
+
+    public void verticalBarChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        String filename) throws IOException {
+
+        this.write("clustered", width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels, data, -1,
+            -1, filename);
+    }
+
+    /**
+     * Finish the data files of all report directories.
+     */
+    public synchronized void close() throws IOException {
+        IOException error = null;
+        for (Iterator<DataFile> i = this.files.values().iterator(); i.hasNext();) {
+            try {
+                i.next().close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        this.files.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Append a chart to the data file of its directory. Charts may come from several render threads.
+     */
+    private synchronized void write(
+        String type,
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        long yAxisMinValue,
+        long yAxisIncrement,
+        String filename) throws IOException {
+
+        Metrics.Timer timer = this.metrics.start("JsonGraph.write");
+        try {
+            File file = new File(filename).getAbsoluteFile();
+            String name = file.getName();
+            if (name.lastIndexOf('.') > 0) {
+                name = name.substring(0, name.lastIndexOf('.'));
+            }
+            DataFile dataFile = this.getDataFile(file.getParentFile());
+            Writer out = dataFile.out;
+
+            out.write(dataFile.count++ == 0 ? "\n" : ",\n");
+            writeString(out, name);
+            out.write(":{\"type\":");
+            writeString(out, type);
+            out.write(",\"width\":" + width + ",\"height\":" + height);
+            writeProperty(out, "title", title);
+            writeProperty(out, "xTitle", xAxisTitle);
+            writeProperty(out, "yTitle", yAxisTitle);
+            if (yAxisMinValue != -1) {
+                out.write(",\"yMin\":" + yAxisMinValue + ",\"yIncrement\":" + yAxisIncrement);
+            }
+            out.write(",\"legend\":");
+            writeStrings(out, legendLabels);
+            if (xAxisLabels != null) {
+                List<String> labels = Arrays.asList(xAxisLabels);
+                String labelsOf = dataFile.labels.get(labels);
+                if (labelsOf != null) {
+                    out.write(",\"labelsOf\":");
+                    writeString(out, labelsOf);
+                } else {
+                    dataFile.labels.put(labels, name);
+                    out.write(",\"labels\":");
+                    writeStrings(out, xAxisLabels);
+                }
+            }
+            out.write(",\"data\":[");
+            for (int i = 0; i < data.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeRow(out, data[i]);
+            }
+            out.write("]}");
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Return the data file of a directory, starting it and copying the script on first use.
+     */
+    private DataFile getDataFile(File dir) throws IOException {
+        String key = dir.getPath();
+        DataFile dataFile = this.files.get(key);
+        if (dataFile == null) {
+            copyScript(new File(dir, SCRIPT_FILE));
+            dataFile = new DataFile(new File(dir, DATA_FILE));
+            dataFile.out.write("{\"colors\":");
+            writeStrings(dataFile.out, this.colors);
+            dataFile.out.write(",\"charts\":{");
+            this.files.put(key, dataFile);
+        }
+        return dataFile;
+    }
+
+    private static void copyScript(File file) throws IOException {
+        InputStream in = JsonGraph.class.getResourceAsStream(SCRIPT_FILE);
+        if (in == null) {
+            throw new IOException("Missing resource " + SCRIPT_FILE);
+        }
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write a row of data, as sparse row when most of its values are zero.
+     */
+    private static void writeRow(Writer out, double[] row) throws IOException {
+        int nonZero = 0;
+        for (int j = 0; j < row.length; j++) {
+            if (row[j] != 0) {
+                nonZero++;
+            }
+        }
+        if (nonZero * 2 >= row.length) {
+            out.write('[');
+            for (int j = 0; j < row.length; j++) {
+                if (j > 0) {
+                    out.write(',');
+                }
+                out.write(number(row[j]));
+            }
+            out.write(']');
+            return;
+        }
+        out.write("{\"length\":" + row.length + ",\"index\":[");
+        boolean first = true;
+        for (int j = 0; j < row.length; j++) {
+            if (row[j] != 0) {
+                out.write(first ? "" : ",");
+                out.write(Integer.toString(j));
+                first = false;
+            }
+        }
+        out.write("],\"values\":[");
+        first = true;
+        for (int j = 0; j < row.length; j++) {
+            if (row[j] != 0) {
+                out.write(first ? "" : ",");
+                out.write(number(row[j]));
+                first = false;
+            }
+        }
+        out.write("]}");
+    }
+
+    private static void writeProperty(Writer out, String key, String value) throws IOException {
+        if (value == null || value.length() == 0) {
+            return;
+        }
+        out.write(",\"" + key + "\":");
+        writeString(out, value);
+    }
+
+    private static void writeStrings(Writer out, String[] values) throws IOException {
+        out.write('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            if (values[i] == null) {
+                out.write("null");
+            } else {
+                writeString(out, values[i]);
+            }
+        }
+        out.write(']');
+    }
+
+    private static void writeString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                out.write("\\u" + Integer.toHexString(0x10000 | c).substring(1));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Format a value without a fraction where possible.
+     */
+    private static String number(double value) {
+        if (value == (long) value) {
+            return Long.toString((long) value);
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "0";
+        }
+        return Double.toString(value);
+    }
+
+    private static String toHex(Color color) {
+        return "#" + Integer.toHexString(0x1000000 | (color.getRGB() & 0xffffff)).substring(1);
+    }
+
+    /**
+     * The data file of one report directory.
+     */
+    private static class DataFile {
+
+        private Writer                    out;
+        private int                       count;
+        private Map<List<String>, String> labels = new HashMap<List<String>, String>();
+
+        public DataFile(File file) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        }
+
+        public void close() throws IOException {
+            this.out.write("\n}}\n");
+            this.out.close();
+        }
+    }
+
+}
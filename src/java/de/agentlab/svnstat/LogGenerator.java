@@ -0,0 +1,379 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * Writes a synthetic log in the format of <code>svn log --verbose --xml</code>, for benchmarks and
+ * scaling tests. The log is written entry by entry, newest revision first, so its size is not
+ * limited by memory. The same settings and seed always give the same log.
+ * <p>
+ * Commits are spread over the users with a Zipf distribution; with a skew of <code>0</code> all
+ * users commit equally often. Paths lie in a tree of <code>/trunk/moduleN/dirN/.../FileN.java</code>
+ * of up to <code>depth</code> directories. Every <code>branchInterval</code> revisions a branch is
+ * copied from the trunk in a commit of <code>branchSize</code> paths. A share of the authors is
+ * written in LDAP form, <code>uid=...,ou=people,dc=example,dc=com</code>.
+ */
+public class LogGenerator {
+
+    private static final int FANOUT = 8;
+    private static final int FILES  = 50;
+    private static final int MAX_DAY = DateUtil.toEpochDay(9999, 12, 31);
+
+    private int              revisions      = 10000;
+    private int              users          = 20;
+    private double           skew           = 1.0;
+    private int              pathsPerCommit = 5;
+    private int              depth          = 4;
+    private int              modules        = 10;
+    private int[]            actions        = { 20, 70, 8, 2 };
+    private int              branchInterval = 0;
+    private int              branchSize     = 1000;
+    private double           ldapShare      = 0.0;
+    private String           startDate      = "2005-01-01";
+    private int              commitsPerDay  = 20;
+    private long             seed           = 42;
+
+    public void setRevisions(int revisions) {
+        this.revisions = revisions;
+    }
+
+    public void setUsers(int users) {
+        this.users = users;
+    }
+
+    /**
+     * Set the exponent of the Zipf distribution of commits over users.
+     */
+    public void setSkew(double skew) {
+        this.skew = skew;
+    }
+
+    /**
+     * Set the average number of paths of a commit.
+     */
+    public void setPathsPerCommit(int pathsPerCommit) {
+        this.pathsPerCommit = pathsPerCommit;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public void setModules(int modules) {
+        this.modules = modules;
+    }
+
+    /**
+     * Set the relative frequencies of the actions A, M, D and R.
+     */
+    public void setActions(int added, int modified, int deleted, int replaced) {
+        this.actions = new int[] { added, modified, deleted, replaced };
+    }
+
+    /**
+     * Set the number of revisions between branch copies; <code>0</code> for no branches.
+     */
+    public void setBranchInterval(int branchInterval) {
+        this.branchInterval = branchInterval;
+    }
+
+    public void setBranchSize(int branchSize) {
+        this.branchSize = branchSize;
+    }
+
+    /**
+     * Set the share of the authors, between <code>0</code> and <code>1</code>, written in LDAP form.
+     */
+    public void setLdapShare(double ldapShare) {
+        this.ldapShare = ldapShare;
+    }
+
+    public void setStartDate(String startDate) {
+        this.startDate = startDate;
+    }
+
+    public void setCommitsPerDay(int commitsPerDay) {
+        this.commitsPerDay = commitsPerDay;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Check the settings before a log is written.
+     * 
+     * @throws IllegalArgumentException if a count is below 1, an action weight is negative, no action
+     *         has a weight, or the dates do not fit the log, see {@link #checkDates()}
+     */
+    public void checkSettings() {
+        checkAtLeastOne("revisions", this.revisions);
+        checkAtLeastOne("users", this.users);
+        checkAtLeastOne("paths", this.pathsPerCommit);
+        checkAtLeastOne("modules", this.modules);
+        checkAtLeastOne("branchSize", this.branchSize);
+        if (this.branchInterval < 0) {
+            throw new IllegalArgumentException("-branches must not be negative: " + this.branchInterval);
+        }
+        int actionTotal = 0;
+        for (int i = 0; i < this.actions.length; i++) {
+            if (this.actions[i] < 0) {
+                throw new IllegalArgumentException("-actions must not have negative weights: " + this.actions[i]);
+            }
+            actionTotal += this.actions[i];
+        }
+        if (actionTotal == 0) {
+            throw new IllegalArgumentException("-actions must give at least one action a weight");
+        }
+        this.checkDates();
+    }
+
+    private static void checkAtLeastOne(String option, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("-" + option + " must be at least 1: " + value);
+        }
+    }
+
+    /**
+     * Check that the dates of all revisions fit into the four-digit years of the log. The revisions
+     * get consecutive slots of <code>commitsPerDay</code> per day from the start date on.
+     * 
+     * @throws IllegalArgumentException if the start date is invalid or the last revision would fall
+     *         after 9999-12-31
+     */
+    private void checkDates() {
+        long end = this.getStartTime() + (long) this.revisions * this.getInterval() - 1;
+        if (end / DateUtil.SECONDS_PER_DAY > MAX_DAY) {
+            throw new IllegalArgumentException(
+                this.revisions + " revisions at " + this.commitsPerDay + " per day from " + this.startDate +
+                    " run past 9999-12-31; lower -revisions, raise -perDay or use an earlier -start");
+        }
+    }
+
+    private long getStartTime() {
+        return (long) DateUtil.toEpochDay(this.startDate) * DateUtil.SECONDS_PER_DAY;
+    }
+
+    private int getInterval() {
+        return Math.max(1, DateUtil.SECONDS_PER_DAY / Math.max(1, this.commitsPerDay));
+    }
+
+    /**
+     * Write the log as UTF-8. The stream is flushed, not closed.
+     */
+    public void write(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 1 << 16);
+        this.write(writer);
+        writer.flush();
+    }
+
+    public void write(Writer out) throws IOException {
+        this.checkSettings();
+        Random random = new Random(this.seed);
+
+        String[] authors = new String[this.users];
+        double[] userWeights = new double[this.users];
+        double total = 0;
+        for (int i = 0; i < this.users; i++) {
+            if (random.nextDouble() < this.ldapShare) {
+                authors[i] = "uid=user" + i + ",ou=people,dc=example,dc=com";
+            } else {
+                authors[i] = "user" + i;
+            }
+            total += 1.0 / Math.pow(i + 1, this.skew);
+            userWeights[i] = total;
+        }
+        int actionTotal = 0;
+        for (int i = 0; i < this.actions.length; i++) {
+            actionTotal += this.actions[i];
+        }
+
+        long start = this.getStartTime();
+        int interval = this.getInterval();
+        int branches = this.branchInterval > 0 ? this.revisions / this.branchInterval : 0;
+
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<log>\n");
+        StringBuilder entry = new StringBuilder(1024);
+        for (int revision = this.revisions; revision > 0; revision--) {
+            entry.setLength(0);
+
+            // Times grow with the revision: each revision gets its own slot of the day.
+            long time = start + (long) (revision - 1) * interval + random.nextInt(interval);
+            int user = Arrays.binarySearch(userWeights, random.nextDouble() * total);
+            user = Math.min(user < 0 ? -user - 1 : user, this.users - 1);
+
+            entry.append("<logentry\n   revision=\"").append(revision).append("\">\n");
+            entry.append("<author>").append(escape(authors[user])).append("</author>\n");
+            entry.append("<date>").append(DateUtil.formatDate((int) (time / DateUtil.SECONDS_PER_DAY)));
+            entry.append('T').append(DateUtil.formatTime((int) (time % DateUtil.SECONDS_PER_DAY)));
+            entry.append('.').append(100000 + random.nextInt(900000)).append("Z</date>\n");
+            entry.append("<paths>\n");
+
+            if (this.branchInterval > 0 && revision % this.branchInterval == 0) {
+                String branch = "/branches/branch" + branches--;
+                entry.append("<path\n   copyfrom-path=\"/trunk\"\n   copyfrom-rev=\"").append(revision - 1);
+                entry.append("\"\n   kind=\"dir\"\n   action=\"A\">").append(branch).append("</path>\n");
+                for (int i = 1; i < this.branchSize; i++) {
+                    entry.append("<path\n   kind=\"file\"\n   action=\"A\">").append(branch);
+                    this.appendPath(entry, random);
+                    entry.append("</path>\n");
+                    if (entry.length() > 1 << 16) {
+                        out.append(entry);
+                        entry.setLength(0);
+                    }
+                }
+            } else {
+                int paths = 1 + random.nextInt(Math.max(1, 2 * this.pathsPerCommit - 1));
+                for (int i = 0; i < paths; i++) {
+                    entry.append("<path\n   kind=\"file\"\n   action=\"");
+                    entry.append(action(random.nextInt(Math.max(1, actionTotal)))).append("\">/trunk");
+                    this.appendPath(entry, random);
+                    entry.append("</path>\n");
+                }
+            }
+
+            entry.append("</paths>\n");
+            entry.append("<msg>Change ").append(revision).append("</msg>\n");
+            entry.append("</logentry>\n");
+            out.append(entry);
+        }
+        out.write("</log>\n");
+    }
+
+    /**
+     * Append a random path below a branch or the trunk.
+     */
+    private void appendPath(StringBuilder path, Random random) {
+        path.append("/module").append(random.nextInt(Math.max(1, this.modules)));
+        int levels = 1 + random.nextInt(Math.max(1, this.depth));
+        for (int i = 0; i < levels; i++) {
+            path.append("/dir").append(random.nextInt(FANOUT));
+        }
+        path.append("/File").append(random.nextInt(FILES)).append(".java");
+    }
+
+    private char action(int value) {
+        if (value < this.actions[0]) {
+            return 'A';
+        }
+        value -= this.actions[0];
+        if (value < this.actions[1]) {
+            return 'M';
+        }
+        value -= this.actions[1];
+        if (value < this.actions[2]) {
+            return 'D';
+        }
+        return 'R';
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 1 && args[0].equals("-help")) {
+            printUsage();
+            System.exit(0);
+        }
+        CLI cli = new CLI();
+        cli.parseOptions(args);
+
+        LogGenerator generator = new LogGenerator();
+        try {
+            generator.setRevisions(cli.getIntOption("revisions", generator.revisions));
+            generator.setUsers(cli.getIntOption("users", generator.users));
+            generator.setSkew(cli.getDoubleOption("skew", generator.skew));
+            generator.setPathsPerCommit(cli.getIntOption("paths", generator.pathsPerCommit));
+            generator.setDepth(cli.getIntOption("depth", generator.depth));
+            generator.setModules(cli.getIntOption("modules", generator.modules));
+            generator.setBranchInterval(cli.getIntOption("branches", generator.branchInterval));
+            generator.setBranchSize(cli.getIntOption("branchSize", generator.branchSize));
+            generator.setLdapShare(cli.getDoubleOption("ldap", generator.ldapShare));
+            generator.setStartDate(cli.getStringOption("start", generator.startDate));
+            generator.setCommitsPerDay(cli.getIntOption("perDay", generator.commitsPerDay));
+            generator.setSeed(cli.getLongOption("seed", generator.seed));
+
+            String actions = cli.getStringOption("actions");
+            if (actions != null) {
+                String[] parts = actions.split(",");
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException("-actions must give four weights: " + actions);
+                }
+                generator.setActions(
+                    Integer.parseInt(parts[0].trim()),
+                    Integer.parseInt(parts[1].trim()),
+                    Integer.parseInt(parts[2].trim()),
+                    Integer.parseInt(parts[3].trim()));
+            }
+            generator.checkSettings();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid option: " + e.getMessage());
+            printUsage();
+            System.exit(1);
+        }
+
+        try {
+            String filename = cli.getStringOption("o");
+            if (filename != null) {
+                OutputStream out = new FileOutputStream(filename);
+                try {
+                    generator.write(out);
+                } finally {
+                    out.close();
+                }
+            } else {
+                generator.write(System.out);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println(
+            "Usage: LogGenerator [-o <logfile>] " +
+                "[-revisions <n>] " +
+                "[-users <n>] " +
+                "[-skew <zipfExponent>] " +
+                "[-paths <pathsPerCommit>] " +
+                "[-depth <maxDirectories>] " +
+                "[-modules <n>] " +
+                "[-actions <A,M,D,R weights>] " +
+                "[-branches <revisionsBetweenCopies>] " +
+                "[-branchSize <pathsPerCopy>] " +
+                "[-ldap <shareOfLdapAuthors>] " +
+                "[-start <yyyy-MM-dd>] " +
+                "[-perDay <commitsPerDay>] " +
+                "[-seed <n>]");
+        System.err.println(
+            "               (Without -o, the log is written to standard output.)");
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+
+/**
+ * Streaming reader for the output of <code>svn log --verbose --xml</code>. The log is walked one
+ * <code>logentry</code> at a time with StAX, and every finished record is handed to
+ * {@link Stat#addRecord(SvnRecord)} right away, so memory use does not depend on the size of the
+ * log.
+ */
+public class LogReader {
+
+    private static final XMLInputFactory factory = createFactory();
+
+    private ExclusionFilter              exclusions;
+
+    private PathClassifier               paths      = new PathClassifier();
+
+    private int                          minRevision;
+
+    public LogReader(ExclusionFilter exclusions) {
+        this.exclusions = exclusions;
+    }
+
+    /**
+     * Skip all entries up to and including a revision.
+     */
+    public void setMinRevision(int minRevision) {
+        this.minRevision = minRevision;
+    }
+
+    public void read(InputStream in, Stat stat) throws IOException, XMLStreamException {
+        XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try {
+            SvnRecord record;
+            while ((record = this.nextRecord(reader)) != null) {
+                stat.addRecord(record);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read the log into a list of records instead of a {@link Stat}.
+     */
+    public void read(InputStream in, List<SvnRecord> records) throws IOException, XMLStreamException {
+        XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try {
+            SvnRecord record;
+            while ((record = this.nextRecord(reader)) != null) {
+                records.add(record);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read up to the next entry that is neither excluded nor skipped.
+     * 
+     * @return the record for the entry or <code>null</code> at the end of the log
+     */
+    private SvnRecord nextRecord(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("logentry")) {
+                SvnRecord record = this.readLogEntry(reader);
+                if (record != null) {
+                    return record;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the current <code>logentry</code> element up to its end tag.
+     * 
+     * @return the record for the entry or <code>null</code> if the entry is excluded or skipped
+     */
+    private SvnRecord readLogEntry(XMLStreamReader reader) throws XMLStreamException {
+        String revision = reader.getAttributeValue(null, "revision");
+        if (this.minRevision > 0 && parseRevision(revision) <= this.minRevision) {
+            skipElement(reader);
+            return null;
+        }
+        String author = null;
+        String date = null;
+        boolean excluded = false;
+        this.paths.clear();
+
+        // Depth 1 is inside the entry, depth 2 inside its paths. Other elements are skipped whole,
+        // among them the nested entries of merged revisions in the output of svn log -g.
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (depth == 1 && name.equals("author")) {
+                    author = reader.getElementText();
+                } else if (depth == 1 && name.equals("date")) {
+                    date = reader.getElementText();
+                } else if (depth == 1 && name.equals("paths")) {
+                    depth++;
+                } else if (depth == 2 && name.equals("path")) {
+                    String action = reader.getAttributeValue(null, "action");
+                    String file = reader.getElementText();
+                    if (excluded || this.exclusions.isExcluded(file)) {
+                        excluded = true;
+                    } else {
+                        this.paths.add(action, file);
+                    }
+                } else {
+                    skipElement(reader);
+                }
+            }
+        }
+
+        if (excluded || date == null) {
+            return null;
+        }
+
+        SvnRecord record = new SvnRecord();
+        record.setRevision(parseRevision(revision));
+        this.paths.fill(record);
+
+        String dateStr = date.trim();
+        int index = dateStr.indexOf("T");
+        record.setDate(dateStr.substring(0, index));
+        record.setTime(dateStr.substring(index + 1, index + 9));
+        record.setUser(parseUser(author).toLowerCase());
+        return record;
+    }
+
+    /**
+     * Extract the user name from an author string. LDAP style authors such as
+     * <code>uid=jli,dc=agentlab,dc=de</code> are reduced to the value of their first component.
+     * 
+     * @param author the content of the <code>author</code> element, may be <code>null</code>
+     * 
+     * @return the user name
+     */
+    public static String parseUser(String author) {
+        if (author == null) {
+            return "unknown";
+        }
+        if (author.indexOf("=") != -1) {
+            return author.substring(author.indexOf("=") + 1, author.indexOf(",")).trim();
+        } else {
+            return author.trim();
+        }
+    }
+
+    /**
+     * Parse the <code>revision</code> attribute of a log entry.
+     * 
+     * @return the revision or <code>0</code> if the attribute is missing or invalid
+     */
+    public static int parseRevision(String revision) {
+        if (revision == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(revision.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory result = XMLInputFactory.newInstance();
+        result.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        result.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        result.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return result;
+    }
+
+}
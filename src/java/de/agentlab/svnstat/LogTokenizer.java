@@ -0,0 +1,630 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLStreamException;
+
+
+/**
+ * Reader for the output of <code>svn log --verbose --xml</code> that works on the bytes of a
+ * memory-mapped file instead of a general XML parser. It only knows the fixed layout svn writes:
+ * the <code>revision</code> of each <code>logentry</code>, its <code>author</code>,
+ * <code>date</code> and the <code>action</code> and text of each <code>path</code>. The
+ * <code>msg</code> is skipped without being decoded. Authors, dates, times and paths are looked up
+ * by their bytes, so a string is only built the first time a value occurs. The nested entries of
+ * merged revisions in the output of <code>svn log -g</code> are skipped, as the merge commit is
+ * already counted.
+ * <p>
+ * When the tokenizer meets anything else, such as a different encoding or CDATA sections, the rest
+ * of the log is read with {@link LogReader}.
+ */
+public class LogTokenizer {
+
+    private static final Charset UTF8           = Charset.forName("UTF-8");
+
+    private static final Pattern ENCODING       = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    /** Mapped files are read in segments of at most this size. */
+    private static final long    SEGMENT        = 1 << 30;
+
+    private static final String[] ACTIONS       = { "A", "M", "D", "R" };
+
+    private static final int     BEFORE_LOG     = 0;
+    private static final int     IN_LOG         = 1;
+    private static final int     AFTER_LOG      = 2;
+
+    private ExclusionFilter      exclusions;
+
+    private PathClassifier       paths          = new PathClassifier();
+
+    private int                  minRevision;
+
+    private ByteDictionary       users          = new ByteDictionary();
+    private ByteDictionary       dates          = new ByteDictionary();
+    private ByteDictionary       times          = new ByteDictionary();
+    private ByteDictionary       files          = new ByteDictionary();
+
+    /** Per path id: 0 if not yet checked, 1 if excluded, 2 if included. */
+    private byte[]               excluded       = new byte[256];
+
+    private int                  state;
+
+    private ByteBuffer           buffer;
+    private int                  position;
+    private int                  limit;
+
+    /** Position of the last attribute name and value read by {@link #nextAttribute()}. */
+    private int                  nameStart;
+    private int                  nameEnd;
+    private int                  valueStart;
+    private int                  valueEnd;
+
+    public LogTokenizer(ExclusionFilter exclusions) {
+        this.exclusions = exclusions;
+    }
+
+    /**
+     * Skip all entries up to and including a revision.
+     */
+    public void setMinRevision(int minRevision) {
+        this.minRevision = minRevision;
+    }
+
+    public void read(File file, Stat stat) throws IOException, XMLStreamException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                // Segments end before a top-level log entry, so that no entry is cut in two.
+                long end = size - start <= SEGMENT ? size : ParallelLogReader.indexOf(channel, start, start + SEGMENT);
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                if (!this.read(buffer, stat)) {
+                    this.readRest(channel, start + buffer.position(), stat);
+                    return;
+                }
+                start = end;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read a part of a log that holds complete log entries, as cut by {@link ParallelLogReader}. The
+     * part may end with the end tag of the log.
+     * 
+     * @return <code>false</code> if the tokenizer stopped at unexpected XML; the position of the
+     *         buffer is then at the start of the element that could not be read
+     */
+    public boolean read(ByteBuffer buffer, List<SvnRecord> records) {
+        this.state = IN_LOG;
+        this.start(buffer);
+        try {
+            SvnRecord record;
+            while ((record = this.nextRecord()) != null) {
+                records.add(record);
+            }
+            buffer.position(this.limit);
+            return true;
+        } catch (UnexpectedXmlException e) {
+            buffer.position(e.position);
+            return false;
+        }
+    }
+
+    private boolean read(ByteBuffer buffer, Stat stat) {
+        this.start(buffer);
+        try {
+            SvnRecord record;
+            while ((record = this.nextRecord()) != null) {
+                stat.addRecord(record);
+            }
+            buffer.position(this.limit);
+            return true;
+        } catch (UnexpectedXmlException e) {
+            buffer.position(e.position);
+            return false;
+        }
+    }
+
+    /**
+     * Read the file from an offset on with {@link LogReader}. Once the start tag of the log has been
+     * read, the rest is wrapped in a new start tag; otherwise the whole file is read again.
+     */
+    private void readRest(FileChannel channel, long offset, Stat stat) throws IOException, XMLStreamException {
+        InputStream in;
+        if (this.state == BEFORE_LOG) {
+            channel.position(0);
+            in = new BufferedInputStream(Channels.newInputStream(channel));
+        } else {
+            channel.position(offset);
+            in = new SequenceInputStream(new ByteBufferInputStream(ByteBuffer.wrap(ParallelLogReader.LOG_START)),
+                new BufferedInputStream(Channels.newInputStream(channel)));
+        }
+        LogReader reader = new LogReader(this.exclusions);
+        reader.setMinRevision(this.minRevision);
+        reader.read(in, stat);
+    }
+
+    private void start(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Read up to the next entry that is neither excluded nor skipped.
+     * 
+     * @return the record for the entry or <code>null</code> at the end of the buffer
+     */
+    private SvnRecord nextRecord() throws UnexpectedXmlException {
+        while (true) {
+            this.skipWhitespace();
+            if (this.position >= this.limit) {
+                return null;
+            }
+            int start = this.position;
+            this.expect('<', start);
+            if (this.state == BEFORE_LOG && this.skip("?xml")) {
+                this.readDeclaration(start);
+            } else if (this.state == BEFORE_LOG && this.skip("log>")) {
+                this.state = IN_LOG;
+            } else if (this.state == IN_LOG && this.skip("logentry")) {
+                SvnRecord record = this.readLogEntry(start);
+                if (record != null) {
+                    return record;
+                }
+            } else if (this.state == IN_LOG && this.skip("/log>")) {
+                this.state = AFTER_LOG;
+            } else {
+                throw new UnexpectedXmlException(start);
+            }
+        }
+    }
+
+    /**
+     * Read the XML declaration. Only logs encoded in UTF-8 are read by the tokenizer.
+     */
+    private void readDeclaration(int start) throws UnexpectedXmlException {
+        int end = this.indexOf("?>", start);
+        byte[] declaration = new byte[end - start];
+        for (int i = 0; i < declaration.length; i++) {
+            declaration[i] = this.buffer.get(start + i);
+        }
+        if (!isUtf8(new String(declaration, UTF8))) {
+            throw new UnexpectedXmlException(start);
+        }
+        this.position = end + 2;
+    }
+
+    /**
+     * Check whether an XML declaration declares UTF-8 or no encoding, which means UTF-8 as well.
+     */
+    static boolean isUtf8(String declaration) {
+        Matcher matcher = ENCODING.matcher(declaration);
+        return !matcher.find() || matcher.group(1).equalsIgnoreCase("UTF-8");
+    }
+
+    /**
+     * Read a <code>logentry</code> element. The position is after its name.
+     * 
+     * @return the record for the entry or <code>null</code> if the entry is excluded or skipped
+     */
+    private SvnRecord readLogEntry(int start) throws UnexpectedXmlException {
+        int revision = 0;
+        if (!this.isSpace(this.position) && !this.is(this.position, '>')) {
+            throw new UnexpectedXmlException(start);
+        }
+        while (this.nextAttribute(start)) {
+            if (this.nameEquals("revision")) {
+                revision = this.parseRevision();
+            }
+        }
+        boolean skip = this.minRevision > 0 && revision <= this.minRevision;
+
+        int author = -1;
+        int date = -1;
+        int time = -1;
+        boolean excluded = false;
+        this.paths.clear();
+
+        while (true) {
+            this.skipWhitespace();
+            this.expect('<', start);
+            if (this.skip("/logentry>")) {
+                break;
+            } else if (this.skip("author>")) {
+                int textStart = this.position;
+                int textEnd = this.readText("/author>", start);
+                author = this.users.add(this.buffer, textStart, textEnd);
+                if (this.users.getString(author) == null) {
+                    String user = LogReader.parseUser(this.decode(textStart, textEnd, start));
+                    this.users.setString(author, user.toLowerCase());
+                }
+            } else if (this.skip("date>")) {
+                int textStart = this.position;
+                int textEnd = this.readText("/date>", start);
+                while (textStart < textEnd && this.isSpace(textStart)) {
+                    textStart++;
+                }
+                while (textEnd > textStart && this.isSpace(textEnd - 1)) {
+                    textEnd--;
+                }
+                int separator = textStart;
+                while (separator < textEnd && !this.is(separator, 'T')) {
+                    separator++;
+                }
+                if (separator + 9 > textEnd || this.contains('&', textStart, textEnd)) {
+                    throw new UnexpectedXmlException(start);
+                }
+                date = this.add(this.dates, textStart, separator, start);
+                time = this.add(this.times, separator + 1, separator + 9, start);
+            } else if (this.skip("paths>")) {
+                while (true) {
+                    this.skipWhitespace();
+                    this.expect('<', start);
+                    if (this.skip("/paths>")) {
+                        break;
+                    }
+                    if (!this.skip("path") || !this.isSpace(this.position) && !this.is(this.position, '>')) {
+                        throw new UnexpectedXmlException(start);
+                    }
+                    String action = null;
+                    while (this.nextAttribute(start)) {
+                        if (this.nameEquals("action")) {
+                            action = this.parseAction();
+                        }
+                    }
+                    int textStart = this.position;
+                    int textEnd = this.readText("/path>", start);
+                    if (skip || excluded) {
+                        continue;
+                    }
+                    int file = this.add(this.files, textStart, textEnd, start);
+                    if (this.isExcluded(file)) {
+                        excluded = true;
+                    } else {
+                        this.paths.add(action, this.files.getString(file));
+                    }
+                }
+            } else if (this.skip("msg>")) {
+                this.position = this.indexOf("</msg>", start) + 6;
+            } else if (this.skip("logentry")) {
+                this.skipLogEntry(start);
+            } else if (!this.skip("msg/>")) {
+                throw new UnexpectedXmlException(start);
+            }
+        }
+
+        if (skip || excluded || date == -1) {
+            return null;
+        }
+
+        SvnRecord record = new SvnRecord();
+        record.setRevision(revision);
+        this.paths.fill(record);
+        record.setDate(this.dates.getString(date));
+        record.setTime(this.times.getString(time));
+        record.setUser(author == -1 ? LogReader.parseUser(null) : this.users.getString(author));
+        return record;
+    }
+
+    /**
+     * Move over a nested <code>logentry</code> element and the entries nested in it. The position
+     * is after its name.
+     */
+    private void skipLogEntry(int start) throws UnexpectedXmlException {
+        int depth = 1;
+        while (depth > 0) {
+            this.position = this.indexOf("<", start) + 1;
+            if (this.skip("logentry")) {
+                depth++;
+            } else if (this.skip("/logentry>")) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Return the id of a value in a dictionary, building its string if the value is new.
+     */
+    private int add(ByteDictionary dictionary, int textStart, int textEnd, int start) throws UnexpectedXmlException {
+        int id = dictionary.add(this.buffer, textStart, textEnd);
+        if (dictionary.getString(id) == null) {
+            dictionary.setString(id, this.decode(textStart, textEnd, start));
+        }
+        return id;
+    }
+
+    private boolean isExcluded(int file) {
+        if (file >= this.excluded.length) {
+            byte[] excluded = new byte[Math.max(file + 1, this.excluded.length * 2)];
+            System.arraycopy(this.excluded, 0, excluded, 0, this.excluded.length);
+            this.excluded = excluded;
+        }
+        if (this.excluded[file] == 0) {
+            this.excluded[file] = (byte) (this.exclusions.isExcluded(this.files.getString(file)) ? 1 : 2);
+        }
+        return this.excluded[file] == 1;
+    }
+
+    /**
+     * Read the next attribute of a start tag.
+     * 
+     * @return <code>false</code> if the end of the start tag was reached instead
+     */
+    private boolean nextAttribute(int start) throws UnexpectedXmlException {
+        this.skipWhitespace();
+        if (this.is(this.position, '>')) {
+            this.position++;
+            return false;
+        }
+        this.nameStart = this.position;
+        while (this.position < this.limit && !this.is(this.position, '=') && !this.isSpace(this.position)) {
+            if (this.is(this.position, '>') || this.is(this.position, '/') || this.is(this.position, '<')) {
+                throw new UnexpectedXmlException(start);
+            }
+            this.position++;
+        }
+        this.nameEnd = this.position;
+        this.skipWhitespace();
+        this.expect('=', start);
+        this.skipWhitespace();
+        if (this.position >= this.limit) {
+            throw new UnexpectedXmlException(start);
+        }
+        byte quote = this.buffer.get(this.position);
+        if (quote != '"' && quote != '\'') {
+            throw new UnexpectedXmlException(start);
+        }
+        this.position++;
+        this.valueStart = this.position;
+        while (this.position < this.limit && this.buffer.get(this.position) != quote) {
+            this.position++;
+        }
+        this.valueEnd = this.position;
+        this.expect((char) quote, start);
+        return true;
+    }
+
+    private boolean nameEquals(String name) {
+        if (this.nameEnd - this.nameStart != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (this.buffer.get(this.nameStart + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse the value of the <code>revision</code> attribute like
+     * {@link LogReader#parseRevision(String)}.
+     */
+    private int parseRevision() {
+        long revision = 0;
+        for (int i = this.valueStart; i < this.valueEnd; i++) {
+            byte b = this.buffer.get(i);
+            if (b < '0' || b > '9' || revision > Integer.MAX_VALUE / 10) {
+                return LogReader.parseRevision(this.ascii(this.valueStart, this.valueEnd));
+            }
+            revision = revision * 10 + (b - '0');
+        }
+        if (this.valueStart == this.valueEnd || revision > Integer.MAX_VALUE) {
+            return 0;
+        }
+        return (int) revision;
+    }
+
+    /**
+     * Return the value of the <code>action</code> attribute. Actions other than the four known ones
+     * are ignored by {@link PathClassifier} and need not be decoded.
+     */
+    private String parseAction() {
+        if (this.valueEnd - this.valueStart != 1) {
+            return null;
+        }
+        byte b = this.buffer.get(this.valueStart);
+        for (int i = 0; i < ACTIONS.length; i++) {
+            if (b == ACTIONS[i].charAt(0)) {
+                return ACTIONS[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Move to the end of the text of an element and over its end tag.
+     * 
+     * @param endTag the end tag without the leading <code>&lt;</code>
+     * 
+     * @return the end of the text
+     */
+    private int readText(String endTag, int start) throws UnexpectedXmlException {
+        while (this.position < this.limit && !this.is(this.position, '<')) {
+            this.position++;
+        }
+        int end = this.position;
+        this.expect('<', start);
+        if (!this.skip(endTag)) {
+            throw new UnexpectedXmlException(start);
+        }
+        return end;
+    }
+
+    /**
+     * Decode the text between two positions. Only the predefined entities and character references
+     * are supported; carriage returns would need the line end handling of XML.
+     */
+    private String decode(int textStart, int textEnd, int start) throws UnexpectedXmlException {
+        byte[] bytes = new byte[textEnd - textStart];
+        int length = 0;
+        for (int i = textStart; i < textEnd; i++) {
+            byte b = this.buffer.get(i);
+            if (b == '\r') {
+                throw new UnexpectedXmlException(start);
+            }
+            if (b != '&') {
+                bytes[length++] = b;
+                continue;
+            }
+            int end = i + 1;
+            while (end < textEnd && !this.is(end, ';')) {
+                end++;
+            }
+            if (end == textEnd) {
+                throw new UnexpectedXmlException(start);
+            }
+            String entity = this.ascii(i + 1, end);
+            int c;
+            if (entity.equals("lt")) {
+                c = '<';
+            } else if (entity.equals("gt")) {
+                c = '>';
+            } else if (entity.equals("amp")) {
+                c = '&';
+            } else if (entity.equals("quot")) {
+                c = '"';
+            } else if (entity.equals("apos")) {
+                c = '\'';
+            } else if (entity.startsWith("#")) {
+                try {
+                    c = entity.startsWith("#x") ? Integer.parseInt(entity.substring(2), 16) : Integer
+                        .parseInt(entity.substring(1));
+                } catch (NumberFormatException e) {
+                    throw new UnexpectedXmlException(start);
+                }
+                if (!Character.isValidCodePoint(c)) {
+                    throw new UnexpectedXmlException(start);
+                }
+            } else {
+                throw new UnexpectedXmlException(start);
+            }
+            byte[] encoded = new String(Character.toChars(c)).getBytes(UTF8);
+            System.arraycopy(encoded, 0, bytes, length, encoded.length);
+            length += encoded.length;
+            i = end;
+        }
+        return new String(bytes, 0, length, UTF8);
+    }
+
+    private String ascii(int start, int end) {
+        StringBuilder result = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            result.append((char) (this.buffer.get(i) & 0xff));
+        }
+        return result.toString();
+    }
+
+    private void skipWhitespace() {
+        while (this.position < this.limit && this.isSpace(this.position)) {
+            this.position++;
+        }
+    }
+
+    private boolean isSpace(int index) {
+        if (index >= this.limit) {
+            return false;
+        }
+        byte b = this.buffer.get(index);
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+    private boolean is(int index, char c) {
+        return index < this.limit && this.buffer.get(index) == c;
+    }
+
+    private boolean contains(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (this.buffer.get(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void expect(char c, int start) throws UnexpectedXmlException {
+        if (!this.is(this.position, c)) {
+            throw new UnexpectedXmlException(start);
+        }
+        this.position++;
+    }
+
+    /**
+     * Move over a string if the bytes at the position match it.
+     */
+    private boolean skip(String s) {
+        if (this.position + s.length() > this.limit) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (this.buffer.get(this.position + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        this.position += s.length();
+        return true;
+    }
+
+    private int indexOf(String s, int start) throws UnexpectedXmlException {
+        int saved = this.position;
+        while (this.position < this.limit) {
+            if (this.is(this.position, s.charAt(0)) && this.skip(s)) {
+                int result = this.position - s.length();
+                this.position = saved;
+                return result;
+            }
+            this.position++;
+        }
+        throw new UnexpectedXmlException(start);
+    }
+
+    /**
+     * Thrown when the log does not have the layout the tokenizer knows.
+     */
+    private static class UnexpectedXmlException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private int               position;
+
+        UnexpectedXmlException(int position) {
+            super(null, null, false, false);
+            this.position = position;
+        }
+    }
+
+}
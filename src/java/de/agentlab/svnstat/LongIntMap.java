@@ -0,0 +1,169 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.util.Arrays;
+
+
+/**
+ * A map from <code>long</code> keys to <code>int</code> counts, with open addressing over two
+ * primitive arrays. Adding to a count does not allocate unless the table grows. Keys are usually
+ * tuples of dense ids packed with {@link #key(int, int)} or {@link #key(int, int, int)}; their
+ * order is the order of the ids from left to right.
+ */
+public class LongIntMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[]            keys;
+    private int[]             values;
+    private int               size;
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    public LongIntMap(int capacity) {
+        int tableSize = 16;
+        while (tableSize < capacity * 2) {
+            tableSize *= 2;
+        }
+        this.keys = new long[tableSize];
+        this.values = new int[tableSize];
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    /**
+     * Pack two ids into a key.
+     */
+    public static long key(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Pack three ids of up to 21 bits each into a key.
+     */
+    public static long key(int first, int second, int third) {
+        if (((first | second | third) & ~0x1FFFFF) != 0) {
+            throw new IllegalArgumentException("Id out of range: " + first + ", " + second + ", " + third);
+        }
+        return ((long) first << 42) | ((long) second << 21) | third;
+    }
+
+    /**
+     * Return the first id of a key packed with {@link #key(int, int, int)}.
+     */
+    public static int first(long key) {
+        return (int) (key >>> 42);
+    }
+
+    public static int second(long key) {
+        return (int) (key >>> 21) & 0x1FFFFF;
+    }
+
+    public static int third(long key) {
+        return (int) key & 0x1FFFFF;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Return the count of a key, or 0 if the key is not in the map.
+     */
+    public int get(long key) {
+        int slot = this.find(key);
+        return this.keys[slot] == EMPTY ? 0 : this.values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return this.keys[this.find(key)] != EMPTY;
+    }
+
+    public void increment(long key) {
+        this.add(key, 1);
+    }
+
+    /**
+     * Add to the count of a key, starting from 0 if the key is not in the map.
+     */
+    public void add(long key, int delta) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Invalid key: " + key);
+        }
+        int slot = this.find(key);
+        if (this.keys[slot] == EMPTY) {
+            this.keys[slot] = key;
+            this.size++;
+            if (this.size * 2 > this.keys.length) {
+                this.values[slot] = delta;
+                this.grow();
+                return;
+            }
+        }
+        this.values[slot] += delta;
+    }
+
+    /**
+     * Return all keys of the map, in no particular order.
+     */
+    public long[] keys() {
+        long[] result = new long[this.size];
+        int count = 0;
+        for (int slot = 0; slot < this.keys.length; slot++) {
+            if (this.keys[slot] != EMPTY) {
+                result[count++] = this.keys[slot];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the slot of a key, or the empty slot where it would be inserted.
+     */
+    private int find(long key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.keys[slot] != EMPTY && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new long[oldKeys.length * 2];
+        this.values = new int[oldValues.length * 2];
+        Arrays.fill(this.keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = this.find(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+}
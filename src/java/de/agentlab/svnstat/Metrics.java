@@ -0,0 +1,248 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+
+/**
+ * Wall time, CPU time and allocated bytes of the phases of a run, summed per phase name, together
+ * with the number of records and paths read and the peak heap usage. Phases may be timed in several
+ * threads at once; CPU time and allocations are those of the timing thread. Phases may nest: when
+ * charts are rendered in the calling thread, the time of a <code>Stat</code> phase includes the
+ * <code>Graph</code> phases of its charts.
+ * <p>
+ * The metrics can be printed and written as <code>metrics.json</code> into the output directory.
+ */
+public class Metrics {
+
+    public static final String FILENAME = "metrics.json";
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private long               startTime  = System.currentTimeMillis();
+    private long               startNanos = System.nanoTime();
+    private Map<String, Phase> phases     = new LinkedHashMap<String, Phase>();
+    private long               records;
+    private long               paths;
+    private String             readPhase;
+
+    /**
+     * Start measuring the peak heap usage from now on.
+     */
+    public void resetPeakHeap() {
+        for (Iterator<MemoryPoolMXBean> i = ManagementFactory.getMemoryPoolMXBeans().iterator(); i.hasNext();) {
+            MemoryPoolMXBean pool = i.next();
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Start timing a phase in the current thread.
+     */
+    public Timer start(String name) {
+        return new Timer(name);
+    }
+
+    /**
+     * Set the number of records and paths read in a phase, for the records and paths per second.
+     */
+    public synchronized void setRead(String phase, long records, long paths) {
+        this.readPhase = phase;
+        this.records = records;
+        this.paths = paths;
+    }
+
+    private synchronized void add(String name, long wallNanos, long cpuNanos, long allocatedBytes) {
+        Phase phase = this.phases.get(name);
+        if (phase == null) {
+            phase = new Phase();
+            this.phases.put(name, phase);
+        }
+        phase.calls++;
+        phase.wallNanos += wallNanos;
+        phase.cpuNanos += cpuNanos;
+        phase.allocatedBytes += allocatedBytes;
+    }
+
+    /**
+     * Return the sum of the peak usages of the heap memory pools since {@link #resetPeakHeap()}.
+     */
+    public long getPeakHeap() {
+        long result = 0;
+        for (Iterator<MemoryPoolMXBean> i = ManagementFactory.getMemoryPoolMXBeans().iterator(); i.hasNext();) {
+            MemoryPoolMXBean pool = i.next();
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                result += pool.getPeakUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Print one line per phase.
+     */
+    public synchronized void print(PrintWriter out) {
+        for (Iterator<Map.Entry<String, Phase>> i = this.phases.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<String, Phase> entry = i.next();
+            Phase phase = entry.getValue();
+            out.println(
+                entry.getKey() + ": " + phase.calls + " calls, "
+                    + millis(phase.wallNanos) + " ms wall, "
+                    + millis(phase.cpuNanos) + " ms cpu, "
+                    + phase.allocatedBytes / 1024 + " KB allocated");
+        }
+        Phase read = this.phases.get(this.readPhase);
+        if (read != null && read.wallNanos > 0) {
+            out.println(
+                "Read " + this.records + " records (" + perSecond(this.records, read.wallNanos) + "/s), "
+                    + this.paths + " paths (" + perSecond(this.paths, read.wallNanos) + "/s)");
+        }
+        out.println("Peak heap: " + this.getPeakHeap() / 1024 / 1024 + " MB");
+        out.flush();
+    }
+
+    /**
+     * Write the metrics as JSON.
+     */
+    public synchronized void writeJson(String filename, String repository) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Phase read = this.phases.get(this.readPhase);
+        long readNanos = read != null ? read.wallNanos : 0;
+
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(filename), "UTF-8"));
+        try {
+            out.println("{");
+            out.println("  \"repository\": " + quote(repository) + ",");
+            out.println("  \"start\": " + quote(format.format(new Date(this.startTime))) + ",");
+            out.println("  \"wallMillis\": " + millis(System.nanoTime() - this.startNanos) + ",");
+            out.println("  \"records\": " + this.records + ",");
+            out.println("  \"paths\": " + this.paths + ",");
+            out.println("  \"recordsPerSecond\": " + perSecond(this.records, readNanos) + ",");
+            out.println("  \"pathsPerSecond\": " + perSecond(this.paths, readNanos) + ",");
+            out.println("  \"peakHeapBytes\": " + this.getPeakHeap() + ",");
+            out.println("  \"phases\": [");
+            List<String> names = new ArrayList<String>(this.phases.keySet());
+            for (int i = 0; i < names.size(); i++) {
+                Phase phase = this.phases.get(names.get(i));
+                out.print(
+                    "    { \"name\": " + quote(names.get(i))
+                        + ", \"calls\": " + phase.calls
+                        + ", \"wallMillis\": " + millis(phase.wallNanos)
+                        + ", \"cpuMillis\": " + millis(phase.cpuNanos)
+                        + ", \"allocatedBytes\": " + phase.allocatedBytes + " }");
+                out.println(i < names.size() - 1 ? "," : "");
+            }
+            out.println("  ]");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    private static long perSecond(long count, long nanos) {
+        return nanos > 0 ? Math.round(count * 1e9 / nanos) : 0;
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder result = new StringBuilder(value.length() + 2);
+        result.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append(String.format("\\u%04x", Integer.valueOf(c)));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private static long cpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static class Phase {
+
+        private int  calls;
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+    }
+
+    /**
+     * The timing of one phase in one thread, started by {@link Metrics#start(String)}.
+     */
+    public class Timer {
+
+        private String name;
+        private long   wallNanos;
+        private long   cpuNanos;
+        private long   allocatedBytes;
+
+        private Timer(String name) {
+            this.name = name;
+            this.allocatedBytes = allocatedBytes();
+            this.cpuNanos = cpuTime();
+            this.wallNanos = System.nanoTime();
+        }
+
+        public void stop() {
+            long wall = System.nanoTime() - this.wallNanos;
+            long cpu = cpuTime() - this.cpuNanos;
+            long allocated = allocatedBytes() - this.allocatedBytes;
+            add(this.name, wall, cpu, allocated);
+        }
+    }
+
+}
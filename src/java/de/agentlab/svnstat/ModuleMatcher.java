@@ -0,0 +1,183 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+
+/**
+ * Classifies paths into the modules of the <code>Module.&lt;name&gt;=&lt;regex&gt;</code> entries of
+ * the configuration. A path belongs to a module if the module's expression is found anywhere in the
+ * path.
+ * <p>
+ * The expressions are compiled once. Expressions without regular expression syntax are found by
+ * plain text search, and expressions starting with a literal prefix are only tried if the prefix
+ * occurs in the path. Both kinds of literals are found in a single pass over the path, dispatching
+ * on the first character of each literal.
+ */
+public class ModuleMatcher {
+
+    private static final int[] NONE     = new int[0];
+
+    private List<String>       names    = new ArrayList<String>();
+
+    private String[]           literals;
+    private int[]              literalModule;
+    private Pattern[]          literalPattern;
+    private int[][]            byFirstChar;
+
+    private Pattern[]          patterns;
+    private int[]              patternModule;
+
+    /**
+     * @param moduleMapping the module expressions and names, as <code>{ { pattern, name } }</code>
+     */
+    public ModuleMatcher(List<String[][]> moduleMapping) {
+        List<String> literalList = new ArrayList<String>();
+        List<Integer> literalModuleList = new ArrayList<Integer>();
+        List<Pattern> literalPatternList = new ArrayList<Pattern>();
+        List<Pattern> patternList = new ArrayList<Pattern>();
+        List<Integer> patternModuleList = new ArrayList<Integer>();
+
+        for (String[][] mapping : moduleMapping) {
+            String patternString = mapping[0][0];
+            String moduleName = mapping[0][1];
+
+            int module = this.names.indexOf(moduleName);
+            if (module == -1) {
+                module = this.names.size();
+                this.names.add(moduleName);
+            }
+
+            Pattern pattern = Pattern.compile(patternString);
+            String text = ExclusionFilter.literalText(patternString);
+            String prefix = ExclusionFilter.literalPrefix(patternString);
+            if (text != null && text.length() > 0) {
+                literalList.add(text);
+                literalModuleList.add(Integer.valueOf(module));
+                literalPatternList.add(null);
+            } else if (prefix.length() > 0) {
+                literalList.add(prefix);
+                literalModuleList.add(Integer.valueOf(module));
+                literalPatternList.add(pattern);
+            } else {
+                patternList.add(pattern);
+                patternModuleList.add(Integer.valueOf(module));
+            }
+        }
+
+        this.literals = literalList.toArray(new String[literalList.size()]);
+        this.literalModule = toArray(literalModuleList);
+        this.literalPattern = literalPatternList.toArray(new Pattern[literalPatternList.size()]);
+        this.patterns = patternList.toArray(new Pattern[patternList.size()]);
+        this.patternModule = toArray(patternModuleList);
+
+        // Index the literals by their first character, modulo the table size.
+        List<List<Integer>> table = new ArrayList<List<Integer>>();
+        for (int i = 0; i < 128; i++) {
+            table.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < this.literals.length; i++) {
+            table.get(this.literals[i].charAt(0) & 127).add(Integer.valueOf(i));
+        }
+        this.byFirstChar = new int[128][];
+        for (int i = 0; i < 128; i++) {
+            this.byFirstChar[i] = toArray(table.get(i));
+        }
+    }
+
+    /**
+     * Return the number of modules.
+     */
+    public int size() {
+        return this.names.size();
+    }
+
+    /**
+     * Return the name of a module.
+     */
+    public String getName(int module) {
+        return this.names.get(module);
+    }
+
+    /**
+     * Return the modules a path belongs to.
+     * 
+     * @return the module ids in ascending order
+     */
+    public int[] match(String path) {
+        if (this.names.isEmpty()) {
+            return NONE;
+        }
+
+        boolean[] matched = new boolean[this.names.size()];
+        boolean[] candidate = new boolean[this.literals.length];
+
+        for (int i = 0; i < path.length(); i++) {
+            int[] entries = this.byFirstChar[path.charAt(i) & 127];
+            for (int j = 0; j < entries.length; j++) {
+                int literal = entries[j];
+                if (!candidate[literal] && path.startsWith(this.literals[literal], i)) {
+                    candidate[literal] = true;
+                }
+            }
+        }
+
+        for (int i = 0; i < this.literals.length; i++) {
+            if (candidate[i] && !matched[this.literalModule[i]]) {
+                if (this.literalPattern[i] == null || this.literalPattern[i].matcher(path).find()) {
+                    matched[this.literalModule[i]] = true;
+                }
+            }
+        }
+        for (int i = 0; i < this.patterns.length; i++) {
+            if (!matched[this.patternModule[i]] && this.patterns[i].matcher(path).find()) {
+                matched[this.patternModule[i]] = true;
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return NONE;
+        }
+        int[] result = new int[count];
+        count = 0;
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                result[count++] = i;
+            }
+        }
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i).intValue();
+        }
+        return result;
+    }
+
+}
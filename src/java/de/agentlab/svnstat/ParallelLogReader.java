@@ -0,0 +1,256 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLStreamException;
+
+
+/**
+ * Reads a log file on several threads. The file is cut into chunks at the <code>&lt;logentry</code>
+ * tags of top-level entries, each chunk is parsed by its own {@link LogTokenizer} on a fork-join
+ * pool, and the records of the chunks are added to the {@link Stat} in file order. The result is
+ * the same as reading the file with a single {@link LogReader}.
+ */
+public class ParallelLogReader {
+
+    private static final byte[] TAG       = { '<', 'l', 'o', 'g', 'e', 'n', 't', 'r', 'y' };
+
+    private static final byte[] END_TAG   = { '<', '/', 'l', 'o', 'g', 'e', 'n', 't', 'r', 'y', '>' };
+
+    static final byte[]         LOG_START = { '<', 'l', 'o', 'g', '>' };
+
+    static final byte[]         LOG_END   = { '<', '/', 'l', 'o', 'g', '>' };
+
+    private static final long   MIN_CHUNK = 4 << 20;
+
+    private static final long   MAX_CHUNK = 64 << 20;
+
+    private ExclusionFilter     exclusions;
+
+    private int                 threads;
+
+    private int                 minRevision;
+
+    public ParallelLogReader(ExclusionFilter exclusions, int threads) {
+        this.exclusions = exclusions;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Skip all entries up to and including a revision.
+     */
+    public void setMinRevision(int minRevision) {
+        this.minRevision = minRevision;
+    }
+
+    public void read(File file, Stat stat) throws IOException, XMLStreamException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            List<Long> bounds = this.split(channel);
+            int count = bounds.size() - 1;
+            if (count > 0 && !isUtf8(channel, bounds.get(0))) {
+                // The chunks are parsed without the XML declaration, that is as UTF-8.
+                LogTokenizer tokenizer = new LogTokenizer(this.exclusions);
+                tokenizer.setMinRevision(this.minRevision);
+                tokenizer.read(file, stat);
+                return;
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(this.threads);
+            try {
+                // Only a few chunks are parsed ahead of the one being added, so that the records
+                // waiting to be added do not grow with the size of the log.
+                List<Future<List<SvnRecord>>> chunks = new ArrayList<Future<List<SvnRecord>>>();
+                for (int i = 0; i < count; i++) {
+                    while (chunks.size() < count && chunks.size() <= i + 2 * this.threads) {
+                        int chunk = chunks.size();
+                        chunks.add(pool.submit(this.parse(channel, bounds.get(chunk), bounds.get(chunk + 1),
+                            chunk == count - 1)));
+                    }
+                    for (SvnRecord record : getRecords(chunks.get(i))) {
+                        stat.addRecord(record);
+                    }
+                    chunks.set(i, null);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Cut the file into chunks of about the same size. Every chunk starts at the
+     * <code>&lt;logentry</code> tag of a top-level entry; the last one runs to the end of the file.
+     * 
+     * @return the start offsets of the chunks, followed by the size of the file
+     */
+    private List<Long> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, size / (4 * this.threads)));
+
+        List<Long> bounds = new ArrayList<Long>();
+        long start = indexOf(channel, 0, 0);
+        while (start < size) {
+            bounds.add(start);
+            start = indexOf(channel, start, start + chunkSize);
+        }
+        bounds.add(size);
+        return bounds;
+    }
+
+    /**
+     * Check that the start of the log, up to the first entry, is plain UTF-8 XML.
+     */
+    private static boolean isUtf8(FileChannel channel, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(end, 4096));
+        channel.read(buffer, 0);
+        String header = new String(buffer.array(), 0, buffer.position(), "ISO-8859-1");
+        return header.startsWith("<") && LogTokenizer.isUtf8(header);
+    }
+
+    /**
+     * Parse the chunk between two offsets. The chunk is wrapped in a <code>log</code> element; the
+     * last chunk already ends with the end tag of the log.
+     */
+    private Callable<List<SvnRecord>> parse(final FileChannel channel, final long start, final long end,
+        final boolean last) {
+        return new Callable<List<SvnRecord>>() {
+
+            public List<SvnRecord> call() throws Exception {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                List<SvnRecord> records = new ArrayList<SvnRecord>();
+                LogTokenizer tokenizer = new LogTokenizer(ParallelLogReader.this.exclusions);
+                tokenizer.setMinRevision(ParallelLogReader.this.minRevision);
+                if (tokenizer.read(buffer, records)) {
+                    return records;
+                }
+
+                // Read the rest of the chunk, from where the tokenizer stopped, with StAX.
+                InputStream in = new SequenceInputStream(new ByteBufferInputStream(ByteBuffer.wrap(LOG_START)),
+                    new ByteBufferInputStream(buffer));
+                if (!last) {
+                    in = new SequenceInputStream(in, new ByteBufferInputStream(ByteBuffer.wrap(LOG_END)));
+                }
+                LogReader reader = new LogReader(ParallelLogReader.this.exclusions);
+                reader.setMinRevision(ParallelLogReader.this.minRevision);
+                reader.read(in, records);
+                return records;
+            }
+        };
+    }
+
+    private static List<SvnRecord> getRecords(Future<List<SvnRecord>> chunk) throws IOException,
+        XMLStreamException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while reading the log", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // The pool wraps the checked exceptions of a task.
+            while (cause instanceof RuntimeException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof XMLStreamException) {
+                throw (XMLStreamException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Find the next <code>&lt;logentry</code> tag of a top-level entry. In the output of
+     * <code>svn log -g</code>, the entries of merged revisions are nested in the entry that merged
+     * them, so the tags are counted from an offset that lies outside of any entry. Inside a log
+     * entry, <code>&lt;</code> only occurs as the start of a tag.
+     * 
+     * @param start an offset outside of any entry, such as the start of a top-level entry
+     * @param from the offset from which on a tag is returned
+     * 
+     * @return the offset of the tag or the size of the file if there is none
+     */
+    static long indexOf(FileChannel channel, long start, long from) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long position = start;
+        int depth = 0;
+        while (position < size) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            boolean last = position + n >= size;
+            // Tags that may cross the end of the buffer are left for the next read.
+            int end = last ? n : n - END_TAG.length + 1;
+            for (int i = 0; i < end; i++) {
+                if (bytes[i] != '<') {
+                    continue;
+                }
+                if (matches(bytes, i, n, TAG)) {
+                    if (depth == 0 && position + i >= from) {
+                        return position + i;
+                    }
+                    depth++;
+                } else if (depth > 0 && matches(bytes, i, n, END_TAG)) {
+                    depth--;
+                }
+            }
+            if (last) {
+                break;
+            }
+            position += Math.max(1, end);
+        }
+        return size;
+    }
+
+    private static boolean matches(byte[] bytes, int offset, int length, byte[] tag) {
+        if (offset + tag.length > length) {
+            return false;
+        }
+        for (int i = 1; i < tag.length; i++) {
+            if (bytes[offset + i] != tag[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
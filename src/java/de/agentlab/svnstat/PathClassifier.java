@@ -0,0 +1,93 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Sorts the <code>path</code> elements of a log entry by their action while the entry is walked
+ * once. The classifier is reused from entry to entry; call {@link #clear()} before each one.
+ */
+public class PathClassifier {
+
+    private List<String> added    = new ArrayList<String>();
+    private List<String> modified = new ArrayList<String>();
+    private List<String> deleted  = new ArrayList<String>();
+    private List<String> replaced = new ArrayList<String>();
+
+    public void clear() {
+        this.added.clear();
+        this.modified.clear();
+        this.deleted.clear();
+        this.replaced.clear();
+    }
+
+    /**
+     * Classify a path by its action. Paths with an unknown action are ignored.
+     * 
+     * @param action the value of the <code>action</code> attribute
+     * @param path the changed path
+     */
+    public void add(String action, String path) {
+        if (action == null || action.length() != 1) {
+            return;
+        }
+        switch (action.charAt(0)) {
+            case 'A':
+                this.added.add(path);
+                break;
+            case 'M':
+                this.modified.add(path);
+                break;
+            case 'D':
+                this.deleted.add(path);
+                break;
+            case 'R':
+                this.replaced.add(path);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Copy the classified paths and their counts into a record. Files are added in the order added,
+     * modified, deleted, replaced.
+     */
+    public void fill(SvnRecord record) {
+        for (String file : this.added) {
+            record.addFile(file);
+        }
+        for (String file : this.modified) {
+            record.addFile(file);
+        }
+        for (String file : this.deleted) {
+            record.addFile(file);
+        }
+        for (String file : this.replaced) {
+            record.addFile(file);
+        }
+        record.setAdded(this.added.size());
+        record.setModified(this.modified.size());
+        record.setDeleted(this.deleted.size());
+        record.setReplaced(this.replaced.size());
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+
+/**
+ * Reads an input stream on a background thread, a few blocks ahead of the reader, so that producing
+ * the data, such as inflating a compressed log, overlaps with consuming it. The blocks are reused;
+ * an error of the background thread is reported by every read after the data before it.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private InputStream           in;
+
+    private BlockingQueue<Block>  free;
+    private BlockingQueue<Block>  filled;
+
+    private Thread                reader;
+
+    private Block                 current;
+    private int                   position;
+
+    private boolean               closed;
+
+    /**
+     * @param in the stream to read ahead
+     * @param blockSize the size of each block
+     * @param blocks the number of blocks that are read ahead at most
+     */
+    public ReadAheadInputStream(InputStream in, int blockSize, int blocks) {
+        this.in = in;
+        this.free = new ArrayBlockingQueue<Block>(blocks);
+        this.filled = new ArrayBlockingQueue<Block>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            this.free.add(new Block(blockSize));
+        }
+
+        this.reader = new Thread(new Runnable() {
+
+            public void run() {
+                ReadAheadInputStream.this.readAhead();
+            }
+        }, "svnstat-read-ahead");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    private void readAhead() {
+        try {
+            while (true) {
+                Block block = this.free.take();
+                try {
+                    block.length = this.in.read(block.data);
+                    while (block.length == 0) {
+                        block.length = this.in.read(block.data);
+                    }
+                } catch (IOException e) {
+                    block.error = e;
+                }
+                this.filled.put(block);
+                if (block.length == -1 || block.error != null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // The stream was closed.
+        }
+    }
+
+    public int read() throws IOException {
+        if (!this.next()) {
+            return -1;
+        }
+        return this.current.data[this.position++] & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!this.next()) {
+            return -1;
+        }
+        int n = Math.min(len, this.current.length - this.position);
+        System.arraycopy(this.current.data, this.position, b, off, n);
+        this.position += n;
+        return n;
+    }
+
+    public int available() {
+        return this.current != null && this.current.length > 0 ? this.current.length - this.position : 0;
+    }
+
+    /**
+     * Make sure the current block has bytes left, waiting for the next one if needed.
+     * 
+     * @return <code>false</code> at the end of the stream
+     */
+    private boolean next() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+        while (true) {
+            if (this.current != null) {
+                if (this.current.error != null) {
+                    throw this.current.error;
+                }
+                if (this.current.length == -1) {
+                    return false;
+                }
+                if (this.position < this.current.length) {
+                    return true;
+                }
+                this.free.add(this.current);
+                this.current = null;
+            }
+            try {
+                this.current = this.filled.take();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            this.position = 0;
+        }
+    }
+
+    /**
+     * Stop the background thread and close the underlying stream.
+     */
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.reader.interrupt();
+        try {
+            this.reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.in.close();
+    }
+
+    private static class Block {
+
+        private byte[]      data;
+        private int         length;
+        private IOException error;
+
+        Block(int size) {
+            this.data = new byte[size];
+        }
+    }
+
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * Chart backend that skips charts which have not changed since the last run. For each chart the
+ * cache keeps a hash of everything the chart is drawn from: the data, the labels, the titles, the
+ * size, the colors and the font. When a chart has the same hash as in the last run and its file
+ * still exists, the file is kept and the chart is not drawn again; otherwise the chart is passed on
+ * to the wrapped backend.
+ * <p>
+ * The hashes are kept in {@value #FILENAME} in each report directory and written by
+ * {@link #close()}. Only charts drawn or kept in this run are saved.
+ */
+public class RenderCache implements ChartBackend {
+
+    public static final String   FILENAME = "svnstat.rendercache";
+
+    private static final int     MAGIC    = 0x53565243;
+    private static final int     VERSION  = 1;
+
+    private ChartBackend         backend;
+    private byte[]               settings;
+    private Metrics              metrics  = new Metrics();
+    private Map<String, Entries> dirs     = new HashMap<String, Entries>();
+
+    /**
+     * @param backend the backend that draws the charts which changed
+     * @param paints the colors of the data sets
+     */
+    public RenderCache(ChartBackend backend, Paint[] paints) {
+        this.backend = backend;
+
+        // Everything besides the chart data that changes how the charts look.
+        Hash hash = new Hash();
+        try {
+            hash.out.writeInt(VERSION);
+            hash.out.writeUTF(backend.getClass().getName());
+            hash.out.writeUTF(Config.getProperty("Chart.font", ""));
+            hash.out.writeInt(paints.length);
+            for (int i = 0; i < paints.length; i++) {
+                hash.out.writeInt(paints[i] instanceof Color ? ((Color) paints[i]).getRGB() : 0);
+            }
+            this.settings = hash.digest();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String getExtension() {
+        return this.backend.getExtension();
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        this.backend.setMetrics(metrics);
+    }
+
+    public void stackedBarChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        String filename) throws Exception {
+
+        Hash hash = this.startHash("stackedBarChart", width, height, title);
+        hash.writeStrings(new String[] { xAxisTitle, yAxisTitle });
+        hash.writeStrings(xAxisLabels);
+        hash.writeStrings(legendLabels);
+        hash.writeData(data);
+        if (this.isUnchanged(filename, hash)) {
+            return;
+        }
+        this.backend.stackedBarChart(
+            width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels, data, filename);
+        this.put(filename, hash);
+    }
+
+    public void lineChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        long yAxisMinValue,
+        long yAxisIncrement,
+        String filename) throws Exception {
+
+        Hash hash = this.startHash("lineChart", width, height, title);
+        hash.writeStrings(new String[] { xAxisTitle, yAxisTitle });
+        hash.writeStrings(xAxisLabels);
+        hash.writeStrings(legendLabels);
+        hash.writeData(data);
+        hash.out.writeLong(yAxisMinValue);
+        hash.out.writeLong(yAxisIncrement);
+        if (this.isUnchanged(filename, hash)) {
+            return;
+        }
+        this.backend.lineChart(
+            width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels, data, yAxisMinValue,
+            yAxisIncrement, filename);
+        this.put(filename, hash);
+    }
+
+    public void pieChart(int width, int height, String[] labels, String title, double[] data, String filename)
+        throws Exception {
+
+        Hash hash = this.startHash("pieChart", width, height, title);
+        hash.writeStrings(labels);
+        hash.writeData(new double[][] { data });
+        if (this.isUnchanged(filename, hash)) {
+            return;
+        }
+        this.backend.pieChart(width, height, labels, title, data, filename);
+        this.put(filename, hash);
+    }
+
+    public void verticalBarChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        String filename) throws Exception {
+
+        Hash hash = this.startHash("verticalBarChart", width, height, title);
+        hash.writeStrings(new String[] { xAxisTitle, yAxisTitle });
+        hash.writeStrings(xAxisLabels);
+        hash.writeStrings(legendLabels);
+        hash.writeData(data);
+        if (this.isUnchanged(filename, hash)) {
+            return;
+        }
+        this.backend.verticalBarChart(
+            width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels, data, filename);
+        this.put(filename, hash);
+    }
+
+    /**
+     * Close the wrapped backend and save the hashes of all report directories.
+     */
+    public void close() throws IOException {
+        this.backend.close();
+        synchronized (this.dirs) {
+            for (Iterator<Map.Entry<String, Entries>> i = this.dirs.entrySet().iterator(); i.hasNext();) {
+                Map.Entry<String, Entries> entry = i.next();
+                Entries entries = entry.getValue();
+                System.out.println(
+                    "Charts kept from the last run in " + entry.getKey() + ": " + entries.kept + " of "
+                        + entries.current.size());
+                entries.save(new File(entry.getKey(), FILENAME));
+            }
+            this.dirs.clear();
+        }
+    }
+
+    private Hash startHash(String type, int width, int height, String title) throws IOException {
+        Hash hash = new Hash();
+        hash.out.write(this.settings);
+        hash.out.writeUTF(type);
+        hash.out.writeInt(width);
+        hash.out.writeInt(height);
+        hash.writeStrings(new String[] { title });
+        return hash;
+    }
+
+    /**
+     * Tell whether a chart file is still valid, and keep its hash if it is.
+     */
+    private boolean isUnchanged(String filename, Hash hash) throws IOException {
+        Metrics.Timer timer = this.metrics.start("RenderCache.check");
+        try {
+            File file = new File(filename).getAbsoluteFile();
+            byte[] digest = hash.digest();
+            Entries entries = this.getEntries(file.getParentFile());
+            synchronized (entries) {
+                byte[] previous = entries.previous.get(file.getName());
+                if (previous != null && MessageDigest.isEqual(previous, digest) && file.isFile()) {
+                    entries.current.put(file.getName(), digest);
+                    entries.kept++;
+                    return true;
+                }
+                return false;
+            }
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Keep the hash of a chart that was just drawn.
+     */
+    private void put(String filename, Hash hash) throws IOException {
+        File file = new File(filename).getAbsoluteFile();
+        Entries entries = this.getEntries(file.getParentFile());
+        synchronized (entries) {
+            entries.current.put(file.getName(), hash.digest());
+        }
+    }
+
+    private Entries getEntries(File dir) {
+        synchronized (this.dirs) {
+            Entries entries = this.dirs.get(dir.getPath());
+            if (entries == null) {
+                entries = new Entries();
+                entries.load(new File(dir, FILENAME));
+                this.dirs.put(dir.getPath(), entries);
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * The hashes of the charts of one report directory.
+     */
+    private static class Entries {
+
+        /** The hashes of the last run. */
+        private Map<String, byte[]> previous = new HashMap<String, byte[]>();
+
+        /** The hashes of the charts drawn or kept in this run. */
+        private Map<String, byte[]> current  = new HashMap<String, byte[]>();
+
+        private int                 kept;
+
+        /**
+         * Read the hashes of the last run. A missing or unreadable file leaves the cache empty.
+         */
+        public void load(File file) {
+            if (!file.exists()) {
+                return;
+            }
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                        System.out.println("Ignoring render cache of unknown format: " + file);
+                        return;
+                    }
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String name = in.readUTF();
+                        byte[] digest = new byte[in.readUnsignedByte()];
+                        in.readFully(digest);
+                        this.previous.put(name, digest);
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                this.previous.clear();
+            }
+        }
+
+        public void save(File file) throws IOException {
+            File tmp = new File(file.getPath() + ".tmp");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(this.current.size());
+                for (Iterator<Map.Entry<String, byte[]>> i = this.current.entrySet().iterator(); i.hasNext();) {
+                    Map.Entry<String, byte[]> entry = i.next();
+                    out.writeUTF(entry.getKey());
+                    out.writeByte(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            } finally {
+                out.close();
+            }
+
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot replace render cache " + file);
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot write render cache " + file);
+            }
+        }
+    }
+
+    /**
+     * A SHA-1 hash that is fed through a {@link DataOutputStream}.
+     */
+    private static class Hash {
+
+        private MessageDigest    digest;
+        private DataOutputStream out;
+        private byte[]           result;
+
+        public Hash() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            this.out = new DataOutputStream(new BufferedOutputStream(new DigestOutputStream(new OutputStream() {
+
+                public void write(int b) {
+                    // Only the digest is needed.
+                }
+
+                public void write(byte[] b, int off, int len) {
+                    // Only the digest is needed.
+                }
+            }, this.digest)));
+        }
+
+        public void writeStrings(String[] values) throws IOException {
+            if (values == null) {
+                this.out.writeInt(-1);
+                return;
+            }
+            this.out.writeInt(values.length);
+            for (int i = 0; i < values.length; i++) {
+                this.out.writeBoolean(values[i] != null);
+                if (values[i] != null) {
+                    this.out.writeUTF(values[i]);
+                }
+            }
+        }
+
+        public void writeData(double[][] data) throws IOException {
+            this.out.writeInt(data.length);
+            for (int i = 0; i < data.length; i++) {
+                this.out.writeInt(data[i].length);
+                for (int j = 0; j < data[i].length; j++) {
+                    this.out.writeDouble(data[i][j]);
+                }
+            }
+        }
+
+        public byte[] digest() throws IOException {
+            if (this.result == null) {
+                this.out.flush();
+                this.result = this.digest.digest();
+            }
+            return this.result;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A named date range to create a report for. Several windows can be reported from one reading of
+ * the log; the report of each window is written into a subdirectory named after the window.
+ * <p>
+ * A window is given as <code>name:begin:end</code>. Begin or end may be left empty for an open
+ * range, e.g. <code>all::</code>.
+ */
+public class ReportWindow {
+
+    private String name;
+    private String beginDate;
+    private String endDate;
+
+    public ReportWindow(String name, String beginDate, String endDate) {
+        this.name = name;
+        this.beginDate = beginDate;
+        this.endDate = endDate;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getBeginDate() {
+        return this.beginDate;
+    }
+
+    public String getEndDate() {
+        return this.endDate;
+    }
+
+    /**
+     * Parse a list of windows, either a comma separated list or the name of a file with one window
+     * per line. Empty lines and lines starting with <code>#</code> are ignored in the file.
+     * 
+     * @throws IllegalArgumentException if a window or one of its dates is malformed, or a name is used
+     *         twice
+     */
+    public static List<ReportWindow> parse(String windows) throws IOException {
+        List<String> specs = new ArrayList<String>();
+        if (new File(windows).isFile()) {
+            BufferedReader reader = new BufferedReader(new FileReader(windows));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.length() > 0 && !line.startsWith("#")) {
+                        specs.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } else {
+            String[] parts = windows.split(",");
+            for (int i = 0; i < parts.length; i++) {
+                specs.add(parts[i].trim());
+            }
+        }
+
+        List<ReportWindow> result = new ArrayList<ReportWindow>();
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < specs.size(); i++) {
+            ReportWindow window = parseWindow(specs.get(i));
+            if (names.contains(window.getName())) {
+                throw new IllegalArgumentException("Window " + window.getName() + " is given twice");
+            }
+            names.add(window.getName());
+            result.add(window);
+        }
+        return result;
+    }
+
+    private static ReportWindow parseWindow(String spec) {
+        String[] parts = spec.split(":", -1);
+        if (parts.length != 3 || parts[0].trim().length() == 0) {
+            throw new IllegalArgumentException("Window must be given as name:begin:end: " + spec);
+        }
+        String name = parts[0].trim();
+        if (name.indexOf('/') >= 0 || name.indexOf('\\') >= 0 || name.equals(".") || name.equals("..")) {
+            throw new IllegalArgumentException("Window name must not be a path: " + name);
+        }
+        ReportWindow window = new ReportWindow(name, emptyToNull(parts[1]), emptyToNull(parts[2]));
+        if (window.getBeginDate() != null) {
+            DateUtil.toEpochDayOnOrAfter(window.getBeginDate());
+        }
+        if (window.getEndDate() != null) {
+            DateUtil.toEpochDayOnOrBefore(window.getEndDate());
+        }
+        return window;
+    }
+
+    private static String emptyToNull(String date) {
+        date = date.trim();
+        return date.length() > 0 ? date : null;
+    }
+
+}
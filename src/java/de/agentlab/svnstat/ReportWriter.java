@@ -0,0 +1,308 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+
+/**
+ * Writes the HTML pages of a report. The index shows the overall charts and lists the users page by
+ * page, each with a link to a page holding all charts of that user. The user pages are spread over
+ * the subdirectories of <code>users</code>, so that no directory gets too large. Every page is
+ * streamed to its file, and browsers only load the images that are scrolled into view.
+ */
+public class ReportWriter {
+
+    /** Number of subdirectories the user pages are spread over. */
+    private static final int SHARDS = 256;
+
+    private String           title;
+
+    private int              usersPerPage;
+
+    private String           extension;
+
+    /**
+     * @param title the title and headline of the pages
+     * @param usersPerPage the number of users listed on each index page
+     * @param extension the file extension of the chart images
+     */
+    public ReportWriter(String title, int usersPerPage, String extension) {
+        this.title = title;
+        this.usersPerPage = Math.max(1, usersPerPage);
+        this.extension = extension;
+    }
+
+    /**
+     * Write the index pages and the user pages of a report.
+     */
+    public void write(String dir, List<String> users) throws IOException {
+        int pages = Math.max(1, (users.size() + this.usersPerPage - 1) / this.usersPerPage);
+        boolean[] shards = new boolean[SHARDS];
+        for (int page = 0; page < pages; page++) {
+            int from = page * this.usersPerPage;
+            int to = Math.min(users.size(), from + this.usersPerPage);
+
+            Writer out = open(new File(dir, getIndexPage(page)));
+            try {
+                this.writeHeader(out, this.title);
+                if (page == 0) {
+                    this.writeChart(out, "", "Total_commits");
+                    this.writeChart(out, "", "File_Count");
+                    out.write("<br>\n");
+                    this.writeChart(out, "", "AllUsers_commits");
+                    this.writeChart(out, "", "Commit_Percentage");
+                    out.write("\n");
+                }
+                writeNavigation(out, page, pages);
+                for (int i = from; i < to; i++) {
+                    String user = users.get(i);
+                    out.write("<h2><a href=\"");
+                    out.write(escape(getUserPage(user)));
+                    out.write("\">");
+                    out.write(escape(user));
+                    out.write("</a></h2>");
+                    this.writeChart(out, "", user + "_commits");
+                    out.write("\n");
+                }
+                writeNavigation(out, page, pages);
+                this.writeScript(out, "");
+                writeFooter(out);
+            } finally {
+                out.close();
+            }
+
+            for (int i = from; i < to; i++) {
+                String user = users.get(i);
+                int shard = getShard(user);
+                File file = new File(dir, getUserPage(user));
+                if (!shards[shard]) {
+                    file.getParentFile().mkdirs();
+                    shards[shard] = true;
+                }
+                this.writeUserPage(file, user, page);
+            }
+        }
+    }
+
+    private void writeUserPage(File file, String user, int page) throws IOException {
+        Writer out = open(file);
+        try {
+            this.writeHeader(out, this.title + " - " + user);
+            out.write("<p><a href=\"../../");
+            out.write(getIndexPage(page));
+            out.write("\">Back to the overview</a></p>\n");
+            this.writeChart(out, "../../", user + "_commits");
+            this.writeChart(out, "../../", user + "_changes");
+            out.write("<br>\n");
+            this.writeChart(out, "../../", user + "_commitTimes");
+            this.writeChart(out, "../../", user + "_commitDays");
+            out.write("\n");
+            this.writeScript(out, "../../");
+            writeFooter(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the index page of a directory holding the reports of several windows.
+     * 
+     * @param written tells for each window whether its report was written
+     */
+    public void writeWindowIndex(String dir, List<ReportWindow> windows, boolean[] written) throws IOException {
+        Writer out = open(new File(dir, "index.html"));
+        try {
+            this.writeHeader(out, this.title);
+            out.write("<ul>\n");
+            for (int i = 0; i < windows.size(); i++) {
+                ReportWindow window = windows.get(i);
+                String range = (window.getBeginDate() != null ? window.getBeginDate() : "")
+                    + " - " + (window.getEndDate() != null ? window.getEndDate() : "");
+                out.write("<li>");
+                if (written[i]) {
+                    out.write("<a href=\"");
+                    out.write(escape(window.getName()));
+                    out.write("/index.html\">");
+                    out.write(escape(window.getName()));
+                    out.write("</a>");
+                } else {
+                    out.write(escape(window.getName()));
+                }
+                out.write(" ");
+                out.write(range);
+                out.write("</li>\n");
+            }
+            out.write("</ul>\n");
+            writeFooter(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Return the file name of an index page. The first page is <code>index.html</code>.
+     * 
+     * @param page the number of the page, starting with 0
+     */
+    public static String getIndexPage(int page) {
+        return page == 0 ? "index.html" : "index-" + (page + 1) + ".html";
+    }
+
+    /**
+     * Return the path of the page of a user, relative to the report directory.
+     */
+    public static String getUserPage(String user) {
+        return "users/" + String.format("%02x", getShard(user)) + "/" + user + ".html";
+    }
+
+    private static int getShard(String user) {
+        return (user.hashCode() & 0x7fffffff) % SHARDS;
+    }
+
+    private void writeHeader(Writer out, String title) throws IOException {
+        out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n<title>");
+        out.write(escape(title));
+        out.write("</title>\n</head>\n<body>\n<h2>");
+        out.write(escape(title));
+        out.write("</h2>\n");
+    }
+
+    private static void writeFooter(Writer out) throws IOException {
+        out.write("</body>\n</html>\n");
+    }
+
+    /**
+     * Write the links to the first, previous, next and last index page.
+     */
+    private static void writeNavigation(Writer out, int page, int pages) throws IOException {
+        if (pages == 1) {
+            return;
+        }
+        out.write("<p>");
+        if (page > 0) {
+            writeLink(out, getIndexPage(0), "First");
+            out.write(" ");
+            writeLink(out, getIndexPage(page - 1), "Previous");
+            out.write(" ");
+        }
+        out.write("Page " + (page + 1) + " of " + pages);
+        if (page < pages - 1) {
+            out.write(" ");
+            writeLink(out, getIndexPage(page + 1), "Next");
+            out.write(" ");
+            writeLink(out, getIndexPage(pages - 1), "Last");
+        }
+        out.write("</p>\n");
+    }
+
+    private static void writeLink(Writer out, String href, String text) throws IOException {
+        out.write("<a href=\"");
+        out.write(href);
+        out.write("\">");
+        out.write(text);
+        out.write("</a>");
+    }
+
+    /**
+     * Write a chart of the report: an image, or a placeholder the script of the JSON backend draws
+     * the chart into.
+     * 
+     * @param prefix the path from the page to the report directory
+     * @param name the name of the chart file, without its extension
+     */
+    private void writeChart(Writer out, String prefix, String name) throws IOException {
+        if (this.isJson()) {
+            out.write("<div class=\"chart\" data-chart=\"");
+            out.write(escape(name));
+            out.write("\"></div>");
+            return;
+        }
+        out.write("<img src=\"");
+        out.write(prefix);
+        out.write(escape(name + "." + this.extension));
+        out.write("\" loading=\"lazy\" alt=\"\">");
+    }
+
+    /**
+     * Include the script that draws the charts, when they are drawn in the browser.
+     */
+    private void writeScript(Writer out, String prefix) throws IOException {
+        if (this.isJson()) {
+            out.write("<script src=\"");
+            out.write(prefix);
+            out.write(JsonGraph.SCRIPT_FILE);
+            out.write("\"></script>\n");
+        }
+    }
+
+    /**
+     * Tell whether the charts are drawn in the browser from the data of a {@link JsonGraph}.
+     */
+    private boolean isJson() {
+        return this.extension.equals("json");
+    }
+
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    }
+
+    private static String escape(String text) {
+        StringBuilder result = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String entity;
+            switch (c) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = "&quot;";
+                    break;
+                default:
+                    entity = null;
+                    break;
+            }
+            if (entity != null && result == null) {
+                result = new StringBuilder(text.length() + 16);
+                result.append(text, 0, i);
+            }
+            if (result != null) {
+                if (entity != null) {
+                    result.append(entity);
+                } else {
+                    result.append(c);
+                }
+            }
+        }
+        return result != null ? result.toString() : text;
+    }
+
+}
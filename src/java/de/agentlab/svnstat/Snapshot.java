@@ -0,0 +1,405 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+
+/**
+ * Binary snapshot of a parsed log. A snapshot holds the dictionaries and columns of a
+ * {@link CommitStore} together with a revision index, and is loaded by mapping the file into
+ * memory, so a report can be run on it without parsing any XML.
+ * <p>
+ * The snapshot records the size, modification time and CRC-32 of the log it was created from. When
+ * that log still exists, a snapshot is only used if the log is unchanged. Snapshots contain all
+ * commits of the log; exclusions are applied when the snapshot is read.
+ * <p>
+ * File layout (big-endian): a header with magic number, format version and source information,
+ * followed by sections that each start with their length in bytes: the user, date and path
+ * dictionaries, the commit columns, and the commit indexes sorted by revision.
+ */
+public class Snapshot {
+
+    private static final int MAGIC   = 0x53565353;
+    private static final int VERSION = 1;
+
+    private CommitStore      store;
+    private int[]            revisionIndex;
+    private String           source;
+    private long             sourceSize;
+    private long             sourceModified;
+    private long             sourceHash;
+
+    private Snapshot() {
+    }
+
+    public CommitStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Return the highest revision of the snapshot.
+     */
+    public int getLastRevision() {
+        if (this.revisionIndex.length == 0) {
+            return 0;
+        }
+        return this.store.getRevision(this.revisionIndex[this.revisionIndex.length - 1]);
+    }
+
+    /**
+     * Return the indexes of the commits with a revision above the given one, in store order. The
+     * first of them is found by a binary search in the revision index.
+     */
+    public int[] getCommitsAfter(int revision) {
+        int low = 0;
+        int high = this.revisionIndex.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.store.getRevision(this.revisionIndex[middle]) <= revision) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int[] result = new int[this.revisionIndex.length - low];
+        System.arraycopy(this.revisionIndex, low, result, 0, result.length);
+        Arrays.sort(result);
+        return result;
+    }
+
+    public String getSource() {
+        return this.source;
+    }
+
+    /**
+     * Check whether the log the snapshot was created from has changed. The log is only read again
+     * if its size is unchanged but its modification time is not.
+     * 
+     * @return <code>true</code> if the log exists and differs from the one the snapshot was created
+     *         from
+     */
+    public boolean isStale() throws IOException {
+        File file = new File(this.source);
+        if (this.sourceSize < 0 || !file.isFile()) {
+            return false;
+        }
+        if (file.length() != this.sourceSize) {
+            return true;
+        }
+        if (file.lastModified() == this.sourceModified) {
+            return false;
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            return hash(in) != this.sourceHash;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Check whether a file starts like a snapshot.
+     */
+    public static boolean isSnapshot(String filename) {
+        File file = new File(filename);
+        if (!file.isFile() || file.length() < 8) {
+            return false;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                return in.readInt() == MAGIC;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Compute the CRC-32 of a stream, reading it to the end.
+     */
+    public static long hash(InputStream in) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            crc.update(buffer, 0, count);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Write a snapshot of a store.
+     * 
+     * @param source the log the store was read from; its size, modification time and hash are
+     *        recorded if it is a file
+     * @param sourceHash the CRC-32 of the log
+     */
+    public static void write(String filename, CommitStore store, String source, long sourceHash)
+        throws IOException {
+
+        File sourceFile = new File(source);
+        boolean isFile = sourceFile.isFile();
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(isFile ? sourceFile.getAbsolutePath() : source);
+            out.writeLong(isFile ? sourceFile.length() : -1);
+            out.writeLong(isFile ? sourceFile.lastModified() : -1);
+            out.writeLong(sourceHash);
+
+            writeDictionary(out, store.getUserDictionary());
+            writeDictionary(out, store.getDateDictionary());
+            writeDictionary(out, store.getPathDictionary());
+
+            int size = store.size();
+            int fileCount = 0;
+            for (int i = 0; i < size; i++) {
+                fileCount += store.getFileCount(i);
+            }
+            out.writeInt(size);
+            out.writeInt(fileCount);
+
+            out.writeLong(4L * size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(store.getRevision(i));
+            }
+            out.writeLong(8L * size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(store.getTimestamp(i));
+            }
+            out.writeLong(4L * size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(store.getUserId(i));
+            }
+            out.writeLong(4L * size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(store.getDateId(i));
+            }
+            out.writeLong(4L * size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(store.getAdded(i));
+            }
+            out.writeLong(4L * size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(store.getModified(i));
+            }
+            out.writeLong(4L * size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(store.getDeleted(i));
+            }
+            out.writeLong(4L * size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(store.getReplaced(i));
+            }
+            out.writeLong(4L * (size + 1));
+            int offset = 0;
+            for (int i = 0; i < size; i++) {
+                out.writeInt(offset);
+                offset += store.getFileCount(i);
+            }
+            out.writeInt(offset);
+            out.writeLong(4L * fileCount);
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < store.getFileCount(i); j++) {
+                    out.writeInt(store.getFileId(i, j));
+                }
+            }
+
+            out.writeLong(4L * size);
+            int[] revisionIndex = revisionIndex(store);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(revisionIndex[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Return the commit indexes of a store, sorted by revision.
+     */
+    private static int[] revisionIndex(CommitStore store) {
+        long[] keys = new long[store.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) store.getRevision(i) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] result = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = (int) keys[i];
+        }
+        return result;
+    }
+
+    private static void writeDictionary(DataOutputStream out, StringDictionary dictionary) throws IOException {
+        byte[][] values = new byte[dictionary.size()][];
+        long length = 4;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = dictionary.get(i).getBytes("UTF-8");
+            length += 4 + values[i].length;
+        }
+        out.writeLong(length);
+        out.writeInt(values.length);
+        for (int i = 0; i < values.length; i++) {
+            out.writeInt(values[i].length);
+            out.write(values[i]);
+        }
+    }
+
+    /**
+     * Load a snapshot by mapping its sections into memory.
+     */
+    public static Snapshot load(String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            Snapshot snapshot = new Snapshot();
+
+            if (file.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot: " + filename);
+            }
+            int version = file.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + filename);
+            }
+            snapshot.source = file.readUTF();
+            snapshot.sourceSize = file.readLong();
+            snapshot.sourceModified = file.readLong();
+            snapshot.sourceHash = file.readLong();
+
+            Reader reader = new Reader(channel, file.getFilePointer());
+            StringDictionary users = reader.dictionary();
+            StringDictionary dates = reader.dictionary();
+            StringDictionary paths = reader.dictionary();
+
+            ByteBuffer counts = reader.map(8);
+            int size = counts.getInt();
+            int fileCount = counts.getInt();
+
+            int[] revisions = reader.ints(size);
+            long[] timestamps = reader.longs(size);
+            int[] userIds = reader.ints(size);
+            int[] dateIds = reader.ints(size);
+            int[] added = reader.ints(size);
+            int[] modified = reader.ints(size);
+            int[] deleted = reader.ints(size);
+            int[] replaced = reader.ints(size);
+            int[] fileOffsets = reader.ints(size + 1);
+            int[] files = reader.ints(fileCount);
+            snapshot.revisionIndex = reader.ints(size);
+
+            snapshot.store =
+                new CommitStore(
+                    users,
+                    dates,
+                    paths,
+                    size,
+                    revisions,
+                    timestamps,
+                    userIds,
+                    dateIds,
+                    added,
+                    modified,
+                    deleted,
+                    replaced,
+                    fileOffsets,
+                    files);
+            return snapshot;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads the sections of a snapshot, each from its own mapping.
+     */
+    private static class Reader {
+
+        private FileChannel channel;
+        private long        position;
+
+        Reader(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        MappedByteBuffer map(long length) throws IOException {
+            if (length > Integer.MAX_VALUE || this.position + length > this.channel.size()) {
+                throw new IOException("Corrupt snapshot section at " + this.position);
+            }
+            MappedByteBuffer result = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, length);
+            this.position += length;
+            return result;
+        }
+
+        private long sectionLength(long expected) throws IOException {
+            long length = this.map(8).getLong();
+            if (expected >= 0 && length != expected) {
+                throw new IOException("Corrupt snapshot section at " + this.position);
+            }
+            return length;
+        }
+
+        StringDictionary dictionary() throws IOException {
+            ByteBuffer buffer = this.map(this.sectionLength(-1));
+            StringDictionary result = new StringDictionary();
+            int count = buffer.getInt();
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                if (length > bytes.length) {
+                    bytes = new byte[length];
+                }
+                buffer.get(bytes, 0, length);
+                result.add(new String(bytes, 0, length, "UTF-8"));
+            }
+            return result;
+        }
+
+        int[] ints(int count) throws IOException {
+            int[] result = new int[count];
+            this.map(this.sectionLength(4L * count)).asIntBuffer().get(result);
+            return result;
+        }
+
+        long[] longs(int count) throws IOException {
+            long[] result = new long[count];
+            this.map(this.sectionLength(8L * count)).asLongBuffer().get(result);
+            return result;
+        }
+    }
+
+}
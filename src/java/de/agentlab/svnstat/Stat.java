@@ -17,18 +17,13 @@
 
 package de.agentlab.svnstat;
 
-import org.apache.commons.collections4.map.MultiKeyMap;
 import org.apache.commons.math3.stat.StatUtils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 
 public class Stat {
@@ -36,20 +31,25 @@ public class Stat {
     private String                       dir                 = "./";
     private String                       repository;
 
-    private List<String>                 users               = new ArrayList<String>();
     private List<String>                 dates               = new ArrayList<String>();
-    private List<SvnRecord>              records             = new ArrayList<SvnRecord>();
-    private Map<String, List<SvnRecord>> recordByDateMap     = new HashMap<String, List<SvnRecord>>();
-    private List<String>                 moduleList          = new ArrayList<String>();
+    private CommitStore                  store               = new CommitStore();
+    private AggregationCube              cube;
+    private DateIndex                    dateIndex;
+    private IntList                      moduleList          = new IntList(16);
+    private boolean[]                    moduleListed;
 
-    private MultiKeyMap                  datesFromTo         = new MultiKeyMap();
-    private MultiKeyMap                  commitsDateUser     = new MultiKeyMap();
-    private MultiKeyMap                  countUserModule     = new MultiKeyMap();
-    private MultiKeyMap                  countUserModuleDate = new MultiKeyMap();
+    private LongIntMap                   countUserModule     = new LongIntMap();
+    private LongIntMap                   countUserModuleDate = new LongIntMap();
 
     private List<String[][]>             moduleMapping       = new ArrayList<String[][]>();
+    private ModuleMatcher                moduleMatcher;
+    private int[][]                      pathModules         = new int[1024][];
+
+    private ChartRenderer                renderer;
 
     public Stat() {
+        this.renderer = new ChartRenderer(new Graph(Graph.parseConfig()), 1);
+
         for (Enumeration<String> e = Config.getKeys(); e.hasMoreElements();) {
             String key = (String) e.nextElement();
             if (key.startsWith("Module")) {
@@ -59,6 +59,35 @@ public class Stat {
                 moduleMapping.add(new String[][] { { pattern, moduleName } });
             }
         }
+        this.moduleMatcher = new ModuleMatcher(this.moduleMapping);
+        this.moduleListed = new boolean[this.moduleMatcher.size()];
+    }
+
+    /**
+     * Share the records of another {@link Stat}, with a report state of its own.
+     */
+    private Stat(Stat shared) {
+        this.repository = shared.repository;
+        this.dates = shared.dates;
+        this.store = shared.store;
+        this.cube = shared.getCube();
+        this.dateIndex = shared.getDateIndex();
+        this.moduleMapping = shared.moduleMapping;
+        this.moduleMatcher = shared.moduleMatcher;
+        this.moduleListed = new boolean[this.moduleMatcher.size()];
+        this.pathModules = shared.pathModules;
+        this.renderer = shared.renderer;
+    }
+
+    /**
+     * Create a {@link Stat} for another report on the same records, written to its own directory.
+     * The reports of several such windows may be created concurrently, as long as no records are
+     * added in the meantime.
+     */
+    public Stat createWindow(String dir) {
+        Stat window = new Stat(this);
+        window.setDir(dir);
+        return window;
     }
 
     public void setDir(String dir) {
@@ -70,6 +99,18 @@ public class Stat {
         return this.dir;
     }
 
+    /**
+     * Set the renderer used for all charts. Charts may still be in progress when a chart method
+     * returns; see {@link ChartRenderer#await()}.
+     */
+    public void setRenderer(ChartRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    public ChartRenderer getRenderer() {
+        return this.renderer;
+    }
+
     public void setRepository(String repository) {
         this.repository = repository;
     }
@@ -78,66 +119,125 @@ public class Stat {
         return this.repository;
     }
 
+    /**
+     * Return the dates in the order they first appear in the log. The list may be reordered;
+     * this does not change the date ids of the {@link CommitStore}.
+     */
     public List<String> getDates() {
         return this.dates;
     }
 
+    /**
+     * Return the users in the order they first appear in the log. The position of a user in the
+     * list is the user id of the {@link CommitStore}.
+     */
     public List<String> getUsers() {
-        return this.users;
+        return this.store.getUserDictionary().getValues();
+    }
+
+    public CommitStore getStore() {
+        return this.store;
     }
 
     public void addRecord(SvnRecord record) {
-        this.records.add(record);
+        StringDictionary dateDictionary = this.store.getDateDictionary();
+        StringDictionary pathDictionary = this.store.getPathDictionary();
+        int dateCount = dateDictionary.size();
+        int pathCount = pathDictionary.size();
+
+        this.store.add(record);
+        this.cube = null;
+        this.dateIndex = null;
 
-        List<SvnRecord> records = this.recordByDateMap.get(record.getDate());
-        if (records == null) {
-            records = new ArrayList<SvnRecord>();
+        if (dateDictionary.size() > dateCount) {
+            this.dates.add(record.getDate());
+        }
+        if (this.moduleMatcher.size() > 0) {
+            this.classifyPaths(pathCount, pathDictionary.size());
         }
-        records.add(record);
-        this.recordByDateMap.put(record.getDate(), records);
+    }
 
-        if (!users.contains(record.getUser())) {
-            this.users.add(record.getUser());
+    /**
+     * Use a complete commit store, for example one loaded from a {@link Snapshot}, instead of adding
+     * its records one by one. This is only possible as long as no record has been added.
+     */
+    public void setStore(CommitStore store) {
+        if (this.store.size() > 0) {
+            throw new IllegalStateException("Records have already been added");
+        }
+        this.store = store;
+        this.cube = null;
+        this.dateIndex = null;
+        this.dates = new ArrayList<String>(store.getDateDictionary().getValues());
+        if (this.moduleMatcher.size() > 0) {
+            this.classifyPaths(0, store.getPathDictionary().size());
         }
-        if (!dates.contains(record.getDate())) {
-            this.dates.add(record.getDate());
+    }
+
+    /**
+     * Compute the modules of the new paths of the store, so that every distinct path is classified
+     * once.
+     */
+    private void classifyPaths(int fromId, int toId) {
+        if (toId > this.pathModules.length) {
+            this.pathModules = Arrays.copyOf(this.pathModules, Math.max(this.pathModules.length * 2, toId));
+        }
+        StringDictionary pathDictionary = this.store.getPathDictionary();
+        for (int pathId = fromId; pathId < toId; pathId++) {
+            this.pathModules[pathId] = this.moduleMatcher.match(pathDictionary.get(pathId));
         }
     }
 
-    public int countCommits(String date, String user) {
-        Integer cachedResult = (Integer) this.commitsDateUser.get(date, user);
-        if (cachedResult != null) {
-            return cachedResult.intValue();
+    private int getUserId(String user) {
+        return this.store.getUserDictionary().lookup(user);
+    }
+
+    private int getDateId(String date) {
+        return this.store.getDateDictionary().lookup(date);
+    }
+
+    /**
+     * Return the aggregation cube of the records, building it if records were added since it was
+     * last built.
+     */
+    public AggregationCube getCube() {
+        if (this.cube == null) {
+            this.cube = new AggregationCube(this.store);
         }
-        int result = 0;
-        for (Iterator<SvnRecord> i = this.records.iterator(); i.hasNext();) {
-            SvnRecord record = i.next();
-            if (record.getDate().equals(date) && record.getUser().equals(user)) {
-                result++;
-            }
+        return this.cube;
+    }
+
+    /**
+     * Return the chronological index of the dates, building it if records were added since it was
+     * last built.
+     */
+    public DateIndex getDateIndex() {
+        if (this.dateIndex == null) {
+            this.dateIndex = new DateIndex(this.store, this.getCube());
         }
+        return this.dateIndex;
+    }
 
-        this.commitsDateUser.put(date, user, new Integer(result));
-        return result;
+    public int countCommits(String date, String user) {
+        return this.getCube().getCommits(this.getDateId(date), this.getUserId(user));
     }
 
     public int getChanges(String date, String user, String type) {
-        int result = 0;
-        for (Iterator<SvnRecord> i = this.records.iterator(); i.hasNext();) {
-            SvnRecord record = i.next();
-            if (record.getDate().equals(date) && record.getUser().equals(user)) {
-                if (type.equals("added")) {
-                    result += record.getAdded();
-                }
-                if (type.equals("modified")) {
-                    result += record.getModified();
-                }
-                if (type.equals("deleted")) {
-                    result += record.getDeleted();
-                }
-            }
+        int dateId = this.getDateId(date);
+        int userId = this.getUserId(user);
+        if (type.equals("added")) {
+            return this.getCube().getChanges(dateId, userId, AggregationCube.ADDED);
         }
-        return result;
+        if (type.equals("modified")) {
+            return this.getCube().getChanges(dateId, userId, AggregationCube.MODIFIED);
+        }
+        if (type.equals("deleted")) {
+            return this.getCube().getChanges(dateId, userId, AggregationCube.DELETED);
+        }
+        if (type.equals("replaced")) {
+            return this.getCube().getChanges(dateId, userId, AggregationCube.REPLACED);
+        }
+        return 0;
     }
 
     public void commitsPerUser(String from, String to, String user) {
@@ -153,6 +253,7 @@ public class Stat {
         this.printCsv(user);
         this.printCsv("\n");
 
+        int userId = this.getUserId(user);
         int index = 0;
         for (Iterator<String> i = this.filterDates(from, to).iterator(); i.hasNext();) {
             String date = i.next();
@@ -160,7 +261,7 @@ public class Stat {
             xAxisLabels[index] = date;
             this.printCsv(date + ", ");
 
-            int commits = this.countCommits(date, user);
+            int commits = this.getCube().getCommits(this.getDateId(date), userId);
             data[0][index] = commits;
             this.printCsv(commits);
             index++;
@@ -171,9 +272,9 @@ public class Stat {
             String filename = null;
             String[] legendLabels;
             legendLabels = new String[] { user };
-            filename = user + "_commits.jpg";
+            filename = user + "_commits." + this.renderer.getExtension();
 
-            new Graph().stackedBarChart(
+            this.renderer.stackedBarChart(
                 Config.getIntProperty("CommitsPerUser.width", 850),
                 Config.getIntProperty("CommitsPerUser.height", 360),
                 Config.getProperty("CommitsPerUser.xLabel"),
@@ -214,13 +315,13 @@ public class Stat {
             xAxisLabels[index] = date;
             this.printCsv(date + ", ");
 
+            int dateId = this.getDateId(date);
             int sum = 0;
-            int jindex = 0;
-            for (Iterator<String> j = this.getUsers().iterator(); j.hasNext(); jindex++) {
-                int commits = this.countCommits(date, j.next());
+            for (int userId = 0; userId < data.length; userId++) {
+                int commits = this.getCube().getCommits(dateId, userId);
                 this.printCsv(commits);
                 this.printCsv(", ");
-                data[jindex][index] = commits;
+                data[userId][index] = commits;
                 sum += commits;
             }
             this.printCsv(sum);
@@ -232,8 +333,8 @@ public class Stat {
             String filename = null;
             String[] legendLabels;
             legendLabels = this.getUsers().toArray(new String[data.length]);
-            filename = "AllUsers_commits.jpg";
-            new Graph().stackedBarChart(
+            filename = "AllUsers_commits." + this.renderer.getExtension();
+            this.renderer.stackedBarChart(
                 Config.getIntProperty("CommitsAllUsers.width", 850),
                 Config.getIntProperty("CommitsAllUsers.height", 360),
                 Config.getProperty("CommitsAllUsers.xLabel"),
@@ -257,6 +358,8 @@ public class Stat {
 
         this.printCsv("Datum, Total\n");
 
+        DateIndex dateIndex = this.getDateIndex();
+        int position = dateIndex.from(from);
         int index = 0;
         for (Iterator<String> i = this.filterDates(from, to).iterator(); i.hasNext();) {
             String date = i.next();
@@ -264,14 +367,12 @@ public class Stat {
             xAxisLabels[index] = date;
             this.printCsv(date + ", ");
 
-            int sum = 0;
-            for (Iterator<String> j = this.getUsers().iterator(); j.hasNext();) {
-                int commits = this.countCommits(date, j.next());
-                sum += commits;
-                data[0][index] = sum;
-            }
+            int sum = dateIndex.getCommits(position, position + 1);
+            data[0][index] = sum;
             this.printCsv(sum);
 
+            position++;
+
             index++;
             this.printCsv("\n");
         }
@@ -279,7 +380,7 @@ public class Stat {
         try {
             String[] legendLabels = new String[] { Config.getProperty("CommitsTotal.yLabel") };
 
-            new Graph().lineChart(
+            this.renderer.lineChart(
                 Config.getIntProperty("CommitsTotal.width", 850),
                 Config.getIntProperty("CommitsTotal.height", 360),
                 Config.getProperty("CommitsTotal.xLabel"),
@@ -290,7 +391,7 @@ public class Stat {
                 data,
                 -1,
                 -1,
-                this.dir + "Total_commits.jpg");
+                this.dir + "Total_commits." + this.renderer.getExtension());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -301,26 +402,29 @@ public class Stat {
 
         String[] xAxisLabels = new String[selectedDates.size()];
 
-        double[][] data = new double[3][selectedDates.size()];
+        double[][] data = new double[4][selectedDates.size()];
 
+        int userId = this.getUserId(user);
         int index = 0;
         for (Iterator<String> i = this.filterDates(from, to).iterator(); i.hasNext();) {
             String date = i.next();
 
             xAxisLabels[index] = date;
 
-            data[0][index] = this.getChanges(date, user, "added");
-            data[1][index] = this.getChanges(date, user, "modified");
-            data[2][index] = this.getChanges(date, user, "deleted");
+            int dateId = this.getDateId(date);
+            data[0][index] = this.getCube().getChanges(dateId, userId, AggregationCube.ADDED);
+            data[1][index] = this.getCube().getChanges(dateId, userId, AggregationCube.MODIFIED);
+            data[2][index] = this.getCube().getChanges(dateId, userId, AggregationCube.DELETED);
+            data[3][index] = this.getCube().getChanges(dateId, userId, AggregationCube.REPLACED);
             index++;
         }
 
         try {
             String filename = null;
             String[] legendLabels;
-            legendLabels = new String[] { "added", "modified", "deleted" };
-            filename = user + "_changes.jpg";
-            new Graph().stackedBarChart(
+            legendLabels = new String[] { "added", "modified", "deleted", "replaced" };
+            filename = user + "_changes." + this.renderer.getExtension();
+            this.renderer.stackedBarChart(
                 Config.getIntProperty("ChangesPerUser.width", 850),
                 Config.getIntProperty("ChangesPerUser.height", 360),
                 Config.getProperty("ChangesPerUser.xlabel"),
@@ -339,19 +443,13 @@ public class Stat {
         String[] labels = new String[this.getUsers().size()];
         double[] data = new double[this.getUsers().size()];
 
-        int index = 0;
+        DateIndex dateIndex = this.getDateIndex();
+        int fromPosition = dateIndex.from(from);
+        int toPosition = dateIndex.to(to);
         int sum[] = new int[this.getUsers().size() + 1];
-        for (Iterator<String> i = this.filterDates(from, to).iterator(); i.hasNext();) {
-            String date = i.next();
-
-            int jindex = 1;
-            for (Iterator<String> j = this.getUsers().iterator(); j.hasNext(); jindex++) {
-                int commits = this.countCommits(date, j.next());
-                sum[0] += commits;
-                sum[jindex] += commits;
-            }
-
-            index++;
+        sum[0] = dateIndex.getCommits(fromPosition, toPosition);
+        for (int userId = 0; userId < this.getUsers().size(); userId++) {
+            sum[userId + 1] = dateIndex.getCommits(userId, fromPosition, toPosition);
         }
 
         for (int i = 1; i < sum.length; i++) {
@@ -359,13 +457,13 @@ public class Stat {
             data[i - 1] = (((double) sum[i]) / ((double) sum[0])) * 100.0;
         }
         try {
-            new Graph().pieChart(
+            this.renderer.pieChart(
                 Config.getIntProperty("CommitsPercentage.width", 850),
                 Config.getIntProperty("CommitsPercentage.height", 360),
                 labels,
                 Config.getProperty("CommitsPercentage.title"),
                 data,
-                this.dir + "Commit_Percentage.jpg");
+                this.dir + "Commit_Percentage." + this.renderer.getExtension());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -396,8 +494,8 @@ public class Stat {
             String filename = null;
             String[] legendLabels;
             legendLabels = new String[] { Config.getProperty("CommitTimesPerUser.yLabel") };
-            filename = user + "_commitTimes.jpg";
-            new Graph().stackedBarChart(
+            filename = user + "_commitTimes." + this.renderer.getExtension();
+            this.renderer.stackedBarChart(
                 Config.getIntProperty("CommitTimesPerUser.width", 850),
                 Config.getIntProperty("CommitTimesPerUser.height", 360),
                 Config.getProperty("CommitTimesPerUser.xLabel"),
@@ -444,8 +542,8 @@ public class Stat {
             String filename = null;
             String[] legendLabels;
             legendLabels = new String[] { Config.getProperty("CommitDaysPerUser.yLabel") };
-            filename = user + "_commitDays.jpg";
-            new Graph().stackedBarChart(
+            filename = user + "_commitDays." + this.renderer.getExtension();
+            this.renderer.stackedBarChart(
                 Config.getIntProperty("CommitDaysPerUser.width", 850),
                 Config.getIntProperty("CommitDaysPerUser.height", 360),
                 Config.getProperty("CommitDaysPerUser.xLabel"),
@@ -470,30 +568,17 @@ public class Stat {
 
         double[][] data = new double[1][selectedDates.size()];
 
-        int base = 0;
-
-        if (from != null) {
-            // Compute the number of files up to selected start date.
-            for (Iterator<String> i = this.filterDates("0000-00-00", from).iterator(); i.hasNext();) {
-                String date = i.next();
-
-                if (i.hasNext()) {
-                    // Omit the last date.
-                    base += getFileCount(date);
-                }
-            }
-        }
-        int sum = base;
+        // The number of files on a date is the number of files added minus the number of files
+        // deleted up to and including that date.
+        DateIndex dateIndex = this.getDateIndex();
+        int position = dateIndex.from(from);
         int index = 0;
-        List<String> filteredDates = this.filterDates(from, to);
-        if (filteredDates.isEmpty())
-            return false;
-        for (Iterator<String> i = filteredDates.iterator(); i.hasNext();) {
+        for (Iterator<String> i = selectedDates.iterator(); i.hasNext();) {
             String date = i.next();
 
-            sum += getFileCount(date);
+            position++;
             xAxisLabels[index] = date;
-            data[0][index] = sum;
+            data[0][index] = dateIndex.getAdded(0, position) - dateIndex.getDeleted(0, position);
             index++;
         }
 
@@ -509,7 +594,7 @@ public class Stat {
         try {
             String[] legendLabels = new String[] { Config.getProperty("FileCount.yLabel") };
 
-            new Graph().lineChart(
+            this.renderer.lineChart(
                 Config.getIntProperty("FileCount.width", 850),
                 Config.getIntProperty("FileCount.height", 360),
                 Config.getProperty("FileCount.xLabel"),
@@ -520,7 +605,7 @@ public class Stat {
                 data,
                 minValue,
                 diff / 4,
-                this.dir + "File_Count.jpg");
+                this.dir + "File_Count." + this.renderer.getExtension());
         } catch (Exception e) {
             e.printStackTrace();
             return true;
@@ -536,51 +621,48 @@ public class Stat {
 
         Map<String, List<String>> modulesPerDay = new HashMap<String, List<String>>();
 
+        int userId = this.getUserId(user);
+        boolean[] dayModules = new boolean[this.moduleMatcher.size()];
+
         for (Iterator<String> i = this.filterDates(from, to).iterator(); i.hasNext();) {
             String date = i.next();
             List<String> modules = new ArrayList<String>();
+            IntList moduleIds = new IntList(4);
+            int dateId = this.getDateId(date);
 
-            List records = this.getRecordsByDate(date);
-            for (Iterator l = records.iterator(); l.hasNext();) {
-                SvnRecord record = (SvnRecord) l.next();
+            IntList indexes = this.store.getIndexesByDate(date);
+            for (int l = 0; l < indexes.size(); l++) {
+                int index = indexes.get(l);
 
-                if (!record.getUser().equals(user)) {
+                if (this.store.getUserId(index) != userId) {
                     continue;
                 }
 
-                List files = record.getFiles();
-                for (Iterator j = files.iterator(); j.hasNext();) {
-                    String filename = (String) j.next();
-                    for (Iterator<String[][]> k = this.moduleMapping.iterator(); k.hasNext();) {
-                        String[][] mapping = k.next();
-                        String patternString = mapping[0][0];
-                        String moduleName = mapping[0][1];
-                        Pattern pattern = Pattern.compile(patternString);
-
-                        Matcher mref = pattern.matcher(filename);
-
-                        if (mref.find()) {
-                            if (!modules.contains(moduleName)) {
-                                modules.add(moduleName);
-                            }
-                            if (!moduleList.contains(moduleName)) {
-                                moduleList.add(moduleName);
-                            }
-                            Integer count = (Integer) this.countUserModuleDate.get(user, moduleName, date);
-                            if (count == null) {
-                                count = new Integer(0);
-                            }
-                            this.countUserModuleDate.put(user, moduleName, date,
-                            new Integer(count.intValue() + 1));
+                for (int j = 0; j < this.store.getFileCount(index); j++) {
+                    int[] fileModules = this.pathModules[this.store.getFileId(index, j)];
+                    for (int k = 0; k < fileModules.length; k++) {
+                        int module = fileModules[k];
+
+                        if (!dayModules[module]) {
+                            dayModules[module] = true;
+                            moduleIds.add(module);
+                            modules.add(this.moduleMatcher.getName(module));
+                        }
+                        if (!this.moduleListed[module]) {
+                            this.moduleListed[module] = true;
+                            this.moduleList.add(module);
                         }
+                        this.countUserModuleDate.increment(LongIntMap.key(userId, dateId, module));
                     }
                 }
             }
+            for (int j = 0; j < moduleIds.size(); j++) {
+                dayModules[moduleIds.get(j)] = false;
+            }
             if (modules.size() > 0) {
                 modulesPerDay.put(date, modules);
-                for (Iterator<String> j = modules.iterator(); j.hasNext();) {
-                    String module = j.next();
-                    this.addCommitCount(user, module);
+                for (int j = 0; j < moduleIds.size(); j++) {
+                    this.countUserModule.increment(LongIntMap.key(userId, moduleIds.get(j)));
                 }
             }
         }
@@ -602,14 +684,13 @@ public class Stat {
     public void moduleActivityPerUser() {
         try {
             PrintWriter pw = new PrintWriter(new FileOutputStream(this.dir + "moduleActivity.csv"));
-            for (Iterator<String> i = this.users.iterator(); i.hasNext();) {
-                String user = i.next();
-                pw.println(user + ", ,");
-                for (Iterator<String> j = this.moduleList.iterator(); j.hasNext();) {
-                    String module = j.next();
-                    Integer count = (Integer) this.countUserModule.get(user, module);
-                    if (count != null) {
-                        pw.println(", " + module + ", " + count);
+            for (int userId = 0; userId < this.getUsers().size(); userId++) {
+                pw.println(this.getUsers().get(userId) + ", ,");
+                for (int j = 0; j < this.moduleList.size(); j++) {
+                    int module = this.moduleList.get(j);
+                    int count = this.countUserModule.get(LongIntMap.key(userId, module));
+                    if (count > 0) {
+                        pw.println(", " + this.moduleMatcher.getName(module) + ", " + count);
                     }
                 }
             }
@@ -620,26 +701,50 @@ public class Stat {
     }
 
     public void moduleActivityPerUserPerDate() {
+        // Sort the counts by user, then by the position of the date in the dates and of the module in
+        // the module list, which is the order they are written in.
+        int[] dateIds = new int[this.dates.size()];
+        int[] dateRank = new int[this.store.getDateDictionary().size()];
+        for (int i = 0; i < dateIds.length; i++) {
+            dateIds[i] = this.getDateId(this.dates.get(i));
+            dateRank[dateIds[i]] = i;
+        }
+        int[] moduleRank = new int[this.moduleMatcher.size()];
+        for (int i = 0; i < this.moduleList.size(); i++) {
+            moduleRank[this.moduleList.get(i)] = i;
+        }
+        long[] keys = this.countUserModuleDate.keys();
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            keys[i] =
+                LongIntMap.key(
+                    LongIntMap.first(key),
+                    dateRank[LongIntMap.second(key)],
+                    moduleRank[LongIntMap.third(key)]);
+        }
+        Arrays.sort(keys);
+
         try {
-            for (Iterator<String> i = this.users.iterator(); i.hasNext();) {
-                String user = i.next();
+            int next = 0;
+            for (int userId = 0; userId < this.getUsers().size(); userId++) {
+                String user = this.getUsers().get(userId);
                 PrintWriter pw =
                     new PrintWriter(new FileOutputStream(this.dir + "/" + user + "_moduleActivityPerDate.csv"));
 
-                for (Iterator<String> j = this.dates.iterator(); j.hasNext();) {
-                    String date = j.next();
-                    pw.print(date + ": ");
+                for (int i = 0; i < dateIds.length; i++) {
+                    pw.print(this.dates.get(i) + ": ");
                     boolean first = true;
-                    for (Iterator<String> k = this.moduleList.iterator(); k.hasNext();) {
-                        String module = k.next();
-                        Integer count = (Integer) this.countUserModuleDate.get(user, module, date);
-                        if (count != null) {
-                            if (!first) {
-                                pw.print(", ");
-                            }
-                            first = false;
-                            pw.print(module + "(" + count + ")");
+                    while (next < keys.length
+                        && LongIntMap.first(keys[next]) == userId
+                        && LongIntMap.second(keys[next]) == i) {
+                        int module = this.moduleList.get(LongIntMap.third(keys[next]));
+                        int count = this.countUserModuleDate.get(LongIntMap.key(userId, dateIds[i], module));
+                        if (!first) {
+                            pw.print(", ");
                         }
+                        first = false;
+                        pw.print(this.moduleMatcher.getName(module) + "(" + count + ")");
+                        next++;
                     }
                     pw.println();
                 }
@@ -650,115 +755,42 @@ public class Stat {
         }
     }
 
-    private void addCommitCount(String user, String module) {
-        Integer curVal = (Integer) this.countUserModule.get(user, module);
-        if (curVal == null) {
-            curVal = new Integer(0);
-        }
-        this.countUserModule.put(user, module, new Integer(curVal.intValue() + 1));
-    }
-
     private List<SvnRecord> getRecordsByDate(String date) {
-        List<SvnRecord> records = this.recordByDateMap.get(date);
-        return records;
-    }
-
-    private int getFileCount(String date) {
-        int sum = 0;
-        for (Iterator<String> j = this.users.iterator(); j.hasNext();) {
-            String user = j.next();
-            int added = this.getChanges(date, user, "added");
-            int deleted = this.getChanges(date, user, "deleted");
-
-            int delta = added - deleted;
-            sum += delta;
-        }
-        return sum;
+        return this.store.getRecordsByDate(date);
     }
 
     private double getCommitsPerHour(String user, String from, String to, String hour) {
-        List<SvnRecord> records = new ArrayList<SvnRecord>();
-
-        List<String> selectedDates = this.filterDates(from, to);
-        for (Iterator<String> i = selectedDates.iterator(); i.hasNext();) {
-            String date = i.next();
-            records.addAll(this.getRecordsByDate(date));
-        }
+        int userId = this.getUserId(user);
+        int hourOfDay = Integer.parseInt(hour);
 
         int result = 0;
-        for (Iterator<SvnRecord> i = records.iterator(); i.hasNext();) {
-            SvnRecord record = i.next();
-            if (record.getUser().equals(user)) {
-                String commitHour = record.getTime().substring(0, 2);
-                if (commitHour.equals(hour)) {
-                    result++;
-                }
-            }
+        for (Iterator<String> i = this.filterDates(from, to).iterator(); i.hasNext();) {
+            int dateId = this.getDateId(i.next());
+            result += this.getCube().getCommitsPerHour(dateId, userId, hourOfDay);
         }
-
         return result;
     }
 
     public double getCommitsPerDay(String user, String from, String to, int dayNumber) {
-        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-        SimpleDateFormat dayFormat = new SimpleDateFormat("u");
-
-        List<SvnRecord> records = new ArrayList<SvnRecord>();
-
-        List<String> selectedDates = this.filterDates(from, to);
-        for (Iterator<String> i = selectedDates.iterator(); i.hasNext();) {
-            String date = i.next();
-            records.addAll(this.getRecordsByDate(date));
-        }
+        int userId = this.getUserId(user);
 
         int result = 0;
-        for (Iterator<SvnRecord> i = records.iterator(); i.hasNext();) {
-            SvnRecord record = i.next();
-            if (record.getUser().equals(user)) {
-                Date parse;
-                try {
-                    parse = df.parse(record.getDate());
-                    String dayOfWeek = dayFormat.format(parse);
-                    if (Integer.parseInt(dayOfWeek) == dayNumber) {
-                        result++;
-                    }
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                }
+        for (Iterator<String> i = this.filterDates(from, to).iterator(); i.hasNext();) {
+            int dateId = this.getDateId(i.next());
+            if (this.getCube().getWeekday(dateId) == dayNumber) {
+                result += this.getCube().getCommits(dateId, userId);
             }
         }
-
         return result;
     }
 
-    private List<String> filterDates(String from, String to) {
-        List<String> cachedResult = (List<String>) this.datesFromTo.get(from, to);
-        if (cachedResult != null) {
-            return cachedResult;
-        }
-
-        List<String> result = new ArrayList<String>();
-        for (Iterator<String> i = this.dates.iterator(); i.hasNext();) {
-            String date = i.next();
-
-            if (from != null && to != null) {
-                if (date.compareTo(from) >= 0 && date.compareTo(to) <= 0) {
-                    result.add(date);
-                }
-            } else if (from != null) {
-                if (date.compareTo(from) >= 0) {
-                    result.add(date);
-                }
-            } else if (to != null) {
-                if (date.compareTo(to) <= 0) {
-                    result.add(date);
-                }
-            } else {
-                result.add(date);
-            }
-        }
-        this.datesFromTo.put(from, to, result);
-        return result;
+    /**
+     * Return the dates from <code>from</code> up to and including <code>to</code> in chronological
+     * order; <code>null</code> leaves the range open.
+     */
+    List<String> filterDates(String from, String to) {
+        DateIndex dateIndex = this.getDateIndex();
+        return dateIndex.getDates(dateIndex.from(from), dateIndex.to(to));
     }
 
     private void printCsv(int sum) {
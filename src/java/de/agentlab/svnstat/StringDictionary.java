@@ -0,0 +1,81 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Maps strings to dense int ids. Ids are handed out in insertion order, starting with 0, and never
+ * change.
+ */
+public class StringDictionary {
+
+    private Map<String, Integer> ids    = new HashMap<String, Integer>();
+    private List<String>         values = new ArrayList<String>();
+
+    /**
+     * Return the id of a string, adding the string if it is not yet known.
+     */
+    public int add(String value) {
+        Integer id = this.ids.get(value);
+        if (id == null) {
+            id = Integer.valueOf(this.values.size());
+            this.ids.put(value, id);
+            this.values.add(value);
+        }
+        return id.intValue();
+    }
+
+    /**
+     * Return the id of a string.
+     * 
+     * @return the id or <code>-1</code> if the string is not known
+     */
+    public int lookup(String value) {
+        Integer id = this.ids.get(value);
+        if (id == null) {
+            return -1;
+        }
+        return id.intValue();
+    }
+
+    public boolean contains(String value) {
+        return this.ids.containsKey(value);
+    }
+
+    public String get(int id) {
+        return this.values.get(id);
+    }
+
+    public int size() {
+        return this.values.size();
+    }
+
+    /**
+     * Return the strings ordered by id. The list cannot be modified.
+     */
+    public List<String> getValues() {
+        return Collections.unmodifiableList(this.values);
+    }
+
+}
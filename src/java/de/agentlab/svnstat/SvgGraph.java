@@ -0,0 +1,453 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+
+/**
+ * Chart backend that writes the charts as SVG files. The charts are laid out like the ones of
+ * {@link Graph} and use the same colors, but are written as text directly from the data, without
+ * drawing them with AWT first. Text widths are estimated from the font size.
+ */
+public class SvgGraph implements ChartBackend {
+
+    private static final String FONT            = "Georgia, serif";
+
+    private static final int    SCALE_FONT      = 10;
+    private static final int    AXIS_TITLE_FONT = 12;
+    private static final int    TITLE_FONT      = 14;
+
+    /** Estimated width of a character, relative to the font size. */
+    private static final double CHAR_WIDTH      = 0.6;
+
+    private static final int    MARGIN          = 10;
+
+    private static final String GRID            =
+        "stroke=\"#000000\" stroke-width=\"0.5\" stroke-dasharray=\"0.5,0.5,1,0.5\"";
+
+    private static final int    STACKED         = 0;
+    private static final int    CLUSTERED       = 1;
+    private static final int    LINE            = 2;
+
+    private String[]            colors;
+    private Metrics             metrics         = new Metrics();
+
+    /**
+     * @param paints the colors of the data sets
+     */
+    public SvgGraph(Paint[] paints) {
+        this.colors = new String[paints.length];
+        for (int i = 0; i < paints.length; i++) {
+            if (paints[i] instanceof Color) {
+                this.colors[i] = toHex((Color) paints[i]);
+            }
+        }
+    }
+
+    public String getExtension() {
+        return "svg";
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void stackedBarChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        String filename) throws Exception {
+
+        this.axisChart(
+            STACKED, width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels,
+            this.getColors(legendLabels.length), data, -1, -1, filename);
+    }
+
+    public void lineChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        long yAxisMinValue,
+        long yAxisIncrement,
+        String filename) throws Exception {
+
+        String[] colors = new String[legendLabels.length];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = toHex(Color.BLUE);
+        }
+        this.axisChart(
+            LINE, width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels, colors, data,
+            yAxisMinValue, yAxisIncrement, filename);
+    }
+
+    public void verticalBarChart(
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        double[][] data,
+        String filename) throws Exception {
+
+        this.axisChart(
+            CLUSTERED, width, height, xAxisTitle, yAxisTitle, xAxisLabels, title, legendLabels,
+            this.getColors(legendLabels.length), data, -1, -1, filename);
+    }
+
+    public void pieChart(int width, int height, String[] labels, String title, double[] data, String filename)
+        throws Exception {
+
+        Metrics.Timer timer = this.metrics.start("SvgGraph.write");
+        Writer out = open(filename);
+        try {
+            String[] colors = this.getColors(labels.length);
+            int top = writeStart(out, width, height, title);
+            double legendWidth = writeLegend(out, width, height, top, labels, colors);
+
+            double total = 0;
+            for (int i = 0; i < data.length; i++) {
+                total += Math.max(0, data[i]);
+            }
+            double cx = (width - legendWidth) / 2;
+            double cy = top + (height - top - MARGIN) / 2.0;
+            double radius = Math.min(width - legendWidth, height - top - MARGIN) / 2.0 - 2 * SCALE_FONT - MARGIN;
+            if (total > 0 && radius > 0) {
+                double angle = -Math.PI / 2;
+                for (int i = 0; i < data.length; i++) {
+                    if (data[i] <= 0) {
+                        continue;
+                    }
+                    double sweep = data[i] / total * 2 * Math.PI;
+                    if (data[i] >= total) {
+                        out.write("<circle cx=\"" + number(cx) + "\" cy=\"" + number(cy) + "\" r=\""
+                            + number(radius) + "\" fill=\"" + colors[i] + "\"/>\n");
+                    } else {
+                        out.write("<path d=\"M" + number(cx) + " " + number(cy)
+                            + "L" + number(cx + radius * Math.cos(angle)) + " " + number(cy + radius * Math.sin(angle))
+                            + "A" + number(radius) + " " + number(radius) + " 0 " + (sweep > Math.PI ? 1 : 0) + " 1 "
+                            + number(cx + radius * Math.cos(angle + sweep)) + " "
+                            + number(cy + radius * Math.sin(angle + sweep)) + "Z\" fill=\"" + colors[i] + "\"/>\n");
+                    }
+                    double middle = angle + sweep / 2;
+                    double labelRadius = radius + SCALE_FONT;
+                    out.write("<text x=\"" + number(cx + labelRadius * Math.cos(middle)) + "\" y=\""
+                        + number(cy + labelRadius * Math.sin(middle)) + "\" dy=\".35em\" text-anchor=\""
+                        + (Math.cos(middle) < 0 ? "end" : "start") + "\" font-size=\"" + SCALE_FONT + "\">"
+                        + value(data[i]) + "</text>\n");
+                    angle += sweep;
+                }
+            }
+            out.write("</svg>\n");
+        } finally {
+            out.close();
+            timer.stop();
+        }
+    }
+
+    public void close() {
+        // Each chart is a file of its own.
+    }
+
+    private void axisChart(
+        int type,
+        int width,
+        int height,
+        String xAxisTitle,
+        String yAxisTitle,
+        String[] xAxisLabels,
+        String title,
+        String[] legendLabels,
+        String[] colors,
+        double[][] data,
+        long yAxisMinValue,
+        long yAxisIncrement,
+        String filename) throws IOException {
+
+        Metrics.Timer timer = this.metrics.start("SvgGraph.write");
+        Writer out = open(filename);
+        try {
+            int top = writeStart(out, width, height, title);
+            double legendWidth = writeLegend(out, width, height, top, legendLabels, colors);
+
+            // The scale of the y axis.
+            double min = 0;
+            double max = 0;
+            int count = data.length > 0 ? data[0].length : 0;
+            for (int j = 0; j < count; j++) {
+                double sum = 0;
+                for (int i = 0; i < data.length; i++) {
+                    if (type == STACKED) {
+                        sum += data[i][j];
+                    } else {
+                        min = Math.min(min, data[i][j]);
+                        max = Math.max(max, data[i][j]);
+                    }
+                }
+                max = Math.max(max, sum);
+            }
+            double step;
+            if (type == LINE && yAxisMinValue != -1 && yAxisIncrement > 0) {
+                min = yAxisMinValue;
+                step = yAxisIncrement;
+            } else {
+                step = niceStep((max - min) / 5);
+                min = Math.floor(min / step) * step;
+            }
+            max = Math.max(min + step, Math.ceil(max / step) * step);
+
+            double scaleWidth = 0;
+            for (double value = min; value <= max + step / 2; value += step) {
+                scaleWidth = Math.max(scaleWidth, textWidth(value(value), SCALE_FONT));
+            }
+            double labelHeight = 0;
+            for (int j = 0; j < xAxisLabels.length; j++) {
+                labelHeight = Math.max(labelHeight, textWidth(xAxisLabels[j], SCALE_FONT));
+            }
+
+            double x0 = MARGIN + (isEmpty(yAxisTitle) ? 0 : AXIS_TITLE_FONT + 6) + scaleWidth + 6;
+            double x1 = Math.max(x0 + 10, width - legendWidth - MARGIN);
+            double y0 = top;
+            double y1 = Math.max(y0 + 10, height - MARGIN - (isEmpty(xAxisTitle) ? 0 : AXIS_TITLE_FONT + 6)
+                - labelHeight - 6);
+            double slot = (x1 - x0) / Math.max(1, count);
+
+            // Grid and scale of the y axis.
+            for (double value = min; value <= max + step / 2; value += step) {
+                double y = y1 - (value - min) / (max - min) * (y1 - y0);
+                out.write("<line x1=\"" + number(x0) + "\" y1=\"" + number(y) + "\" x2=\"" + number(x1) + "\" y2=\""
+                    + number(y) + "\" " + GRID + "/>\n");
+                out.write("<text x=\"" + number(x0 - 4) + "\" y=\"" + number(y) + "\" dy=\".35em\" text-anchor=\"end\""
+                    + " font-size=\"" + SCALE_FONT + "\">" + value(value) + "</text>\n");
+            }
+
+            // Grid and labels of the x axis; labels that would overlap are left out.
+            int every = Math.max(1, (int) Math.ceil(SCALE_FONT * 1.2 / slot));
+            for (int j = 0; j < xAxisLabels.length && j < count; j += every) {
+                double x = x0 + (j + 0.5) * slot;
+                out.write("<line x1=\"" + number(x) + "\" y1=\"" + number(y0) + "\" x2=\"" + number(x) + "\" y2=\""
+                    + number(y1) + "\" " + GRID + "/>\n");
+                out.write("<text transform=\"translate(" + number(x) + "," + number(y1 + 4) + ") rotate(-90)\""
+                    + " dy=\".35em\" text-anchor=\"end\" font-size=\"" + SCALE_FONT + "\">" + escape(xAxisLabels[j])
+                    + "</text>\n");
+            }
+
+            // The data.
+            double scale = (y1 - y0) / (max - min);
+            for (int i = 0; i < data.length; i++) {
+                if (type == LINE) {
+                    out.write("<polyline fill=\"none\" stroke=\"" + colors[i] + "\" points=\"");
+                    for (int j = 0; j < count; j++) {
+                        out.write(number(x0 + (j + 0.5) * slot) + "," + number(y1 - (data[i][j] - min) * scale) + " ");
+                    }
+                    out.write("\"/>\n");
+                    if (slot >= 4) {
+                        out.write("<g fill=\"" + colors[i] + "\">");
+                        for (int j = 0; j < count; j++) {
+                            double x = x0 + (j + 0.5) * slot;
+                            double y = y1 - (data[i][j] - min) * scale;
+                            out.write("<path d=\"M" + number(x) + " " + number(y - 3) + "l3 3-3 3-3-3z\"/>");
+                        }
+                        out.write("</g>\n");
+                    }
+                    continue;
+                }
+
+                out.write("<g fill=\"" + colors[i] + "\">");
+                for (int j = 0; j < count; j++) {
+                    double value = data[i][j];
+                    if (value <= 0) {
+                        continue;
+                    }
+                    double base = 0;
+                    double x;
+                    double barWidth;
+                    if (type == STACKED) {
+                        for (int k = 0; k < i; k++) {
+                            base += data[k][j];
+                        }
+                        x = x0 + j * slot + slot * 0.1;
+                        barWidth = slot * 0.8;
+                    } else {
+                        barWidth = slot * 0.8 / data.length;
+                        x = x0 + j * slot + slot * 0.1 + i * barWidth;
+                    }
+                    double y = y1 - (base + value - min) * scale;
+                    out.write("<rect x=\"" + number(x) + "\" y=\"" + number(y) + "\" width=\"" + number(barWidth)
+                        + "\" height=\"" + number(value * scale) + "\"/>");
+                }
+                out.write("</g>\n");
+            }
+
+            // Axes and their titles.
+            out.write("<path d=\"M" + number(x0) + " " + number(y0) + "V" + number(y1) + "H" + number(x1)
+                + "\" fill=\"none\" stroke=\"#000000\"/>\n");
+            if (!isEmpty(xAxisTitle)) {
+                out.write("<text x=\"" + number((x0 + x1) / 2) + "\" y=\"" + (height - MARGIN)
+                    + "\" text-anchor=\"middle\" font-size=\"" + AXIS_TITLE_FONT + "\">" + escape(xAxisTitle)
+                    + "</text>\n");
+            }
+            if (!isEmpty(yAxisTitle)) {
+                out.write("<text transform=\"translate(" + (MARGIN + AXIS_TITLE_FONT) + "," + number((y0 + y1) / 2)
+                    + ") rotate(-90)\" text-anchor=\"middle\" font-size=\"" + AXIS_TITLE_FONT + "\">"
+                    + escape(yAxisTitle) + "</text>\n");
+            }
+            out.write("</svg>\n");
+        } finally {
+            out.close();
+            timer.stop();
+        }
+    }
+
+    /**
+     * Write the start of the document, the background and the title.
+     * 
+     * @return the top of the area below the title
+     */
+    private static int writeStart(Writer out, int width, int height, String title) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height
+            + "\" viewBox=\"0 0 " + width + " " + height + "\" font-family=\"" + FONT + "\">\n");
+        out.write("<rect width=\"100%\" height=\"100%\" fill=\"#ffffff\"/>\n");
+        if (isEmpty(title)) {
+            return MARGIN;
+        }
+        out.write("<text x=\"" + number(width / 2.0) + "\" y=\"" + (MARGIN + TITLE_FONT) + "\" text-anchor=\"middle\""
+            + " font-size=\"" + TITLE_FONT + "\">" + escape(title) + "</text>\n");
+        return 2 * MARGIN + TITLE_FONT + 4;
+    }
+
+    /**
+     * Write the legend at the right side of the chart.
+     * 
+     * @return the width taken by the legend
+     */
+    private static double writeLegend(Writer out, int width, int height, int top, String[] labels, String[] colors)
+        throws IOException {
+        if (labels == null || labels.length == 0) {
+            return 0;
+        }
+        double textWidth = 0;
+        for (int i = 0; i < labels.length; i++) {
+            textWidth = Math.max(textWidth, textWidth(labels[i], SCALE_FONT));
+        }
+        double legendWidth = textWidth + 3 * MARGIN + SCALE_FONT;
+        double x = width - legendWidth + MARGIN;
+        double y = top + Math.max(0, (height - top - labels.length * (SCALE_FONT + 6)) / 2.0);
+        for (int i = 0; i < labels.length; i++) {
+            out.write("<rect x=\"" + number(x) + "\" y=\"" + number(y) + "\" width=\"" + SCALE_FONT + "\" height=\""
+                + SCALE_FONT + "\" fill=\"" + colors[i] + "\"/>");
+            out.write("<text x=\"" + number(x + SCALE_FONT + 4) + "\" y=\"" + number(y + SCALE_FONT / 2.0)
+                + "\" dy=\".35em\" font-size=\"" + SCALE_FONT + "\">" + escape(labels[i]) + "</text>\n");
+            y += SCALE_FONT + 6;
+        }
+        return legendWidth;
+    }
+
+    private String[] getColors(int count) {
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = i < this.colors.length && this.colors[i] != null ? this.colors[i] : "#808080";
+        }
+        return result;
+    }
+
+    /**
+     * Return a step for the scale of an axis: 1, 2 or 5 times a power of ten.
+     */
+    private static double niceStep(double rough) {
+        if (rough <= 0) {
+            return 1;
+        }
+        double power = Math.pow(10, Math.floor(Math.log10(rough)));
+        double fraction = rough / power;
+        if (fraction <= 1) {
+            return power;
+        } else if (fraction <= 2) {
+            return 2 * power;
+        } else if (fraction <= 5) {
+            return 5 * power;
+        }
+        return 10 * power;
+    }
+
+    private static double textWidth(String text, int fontSize) {
+        return text == null ? 0 : text.length() * CHAR_WIDTH * fontSize;
+    }
+
+    private static boolean isEmpty(String text) {
+        return text == null || text.length() == 0;
+    }
+
+    /**
+     * Format a coordinate with one decimal.
+     */
+    private static String number(double value) {
+        long tenths = Math.round(value * 10);
+        if (tenths % 10 == 0) {
+            return Long.toString(tenths / 10);
+        }
+        return (tenths < 0 ? "-" : "") + Math.abs(tenths) / 10 + "." + Math.abs(tenths) % 10;
+    }
+
+    /**
+     * Format a value of the data with up to two decimals.
+     */
+    private static String value(double value) {
+        long hundredths = Math.round(value * 100);
+        if (hundredths % 100 == 0) {
+            return Long.toString(hundredths / 100);
+        }
+        String fraction = Long.toString(100 + Math.abs(hundredths) % 100).substring(1);
+        if (fraction.endsWith("0")) {
+            fraction = fraction.substring(0, 1);
+        }
+        return (hundredths < 0 ? "-" : "") + Math.abs(hundredths) / 100 + "." + fraction;
+    }
+
+    private static String toHex(Color color) {
+        return "#" + Integer.toHexString(0x1000000 | (color.getRGB() & 0xffffff)).substring(1);
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static Writer open(String filename) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename), "UTF-8"));
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright � 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * 
+ */
+
+package de.agentlab.svnstat;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Runs an <code>svn</code> command and streams its standard output, so the log can be parsed while
+ * svn is still writing it. Standard error is read by a background thread, so svn never blocks on a
+ * full pipe; its last lines are kept for the error message.
+ * <p>
+ * The stream reports a failure of the command as an <code>IOException</code>: when it reaches the
+ * end of the output or is closed, it waits for svn to exit and checks the exit code. If a timeout is
+ * set, svn is killed when it runs longer, and reading fails as well.
+ */
+public class SvnProcess {
+
+    private static final int MAX_ERROR_LINES = 20;
+
+    private String           command;
+    private long             timeout;
+
+    /**
+     * @param command the svn executable, either a path or a name looked up on the <code>PATH</code>
+     * @param timeout the time in milliseconds svn may run, or <code>0</code> for no limit
+     */
+    public SvnProcess(String command, long timeout) {
+        this.command = command;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Start svn with the given arguments and return its standard output.
+     */
+    public InputStream start(List<String> args) throws IOException {
+        List<String> commandLine = new ArrayList<String>();
+        commandLine.add(this.command);
+        commandLine.addAll(args);
+
+        ProcessBuilder builder = new ProcessBuilder(commandLine);
+        Process process = builder.start();
+        process.getOutputStream().close();
+        return new ProcessOutput(process, commandLine.toString(), this.timeout);
+    }
+
+    /**
+     * The standard output of the svn process.
+     */
+    private static class ProcessOutput extends FilterInputStream {
+
+        private Process            process;
+        private String             commandLine;
+        private long               timeout;
+        private long               deadline;
+        private Thread             errorReader;
+        private LinkedList<String> errors = new LinkedList<String>();
+        private Thread             watchdog;
+        private volatile boolean   timedOut;
+        private boolean            eof;
+        private IOException        failure;
+
+        ProcessOutput(Process process, String commandLine, long timeout) {
+            super(process.getInputStream());
+            this.process = process;
+            this.commandLine = commandLine;
+            this.timeout = timeout;
+            this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+            this.errorReader = new Thread(new Runnable() {
+
+                public void run() {
+                    readErrors();
+                }
+            }, "svnstat-svn-stderr");
+            this.errorReader.setDaemon(true);
+            this.errorReader.start();
+
+            if (timeout > 0) {
+                this.watchdog = new Thread(new Runnable() {
+
+                    public void run() {
+                        watch();
+                    }
+                }, "svnstat-svn-watchdog");
+                this.watchdog.setDaemon(true);
+                this.watchdog.start();
+            }
+        }
+
+        private void readErrors() {
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(this.process.getErrorStream()));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    synchronized (this.errors) {
+                        this.errors.add(line);
+                        if (this.errors.size() > MAX_ERROR_LINES) {
+                            this.errors.removeFirst();
+                        }
+                    }
+                }
+                reader.close();
+            } catch (IOException e) {
+                // The process was killed; nothing more to read.
+            }
+        }
+
+        private void watch() {
+            try {
+                if (!this.process.waitFor(this.timeout, TimeUnit.MILLISECONDS)) {
+                    this.timedOut = true;
+                    this.process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                // Reading is finished.
+            }
+        }
+
+        public int read() throws IOException {
+            int result;
+            try {
+                this.checkTimeout();
+                result = super.read();
+            } catch (IOException e) {
+                // Killing svn closes the pipe; report the timeout instead.
+                this.checkTimeout();
+                throw e;
+            }
+            if (result == -1) {
+                this.finish();
+            }
+            return result;
+        }
+
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result;
+            try {
+                this.checkTimeout();
+                result = super.read(buffer, offset, length);
+            } catch (IOException e) {
+                this.checkTimeout();
+                throw e;
+            }
+            if (result == -1) {
+                this.finish();
+            }
+            return result;
+        }
+
+        private void checkTimeout() throws IOException {
+            if (this.timedOut) {
+                throw this.fail("did not finish within " + this.timeout / 1000 + " seconds");
+            }
+        }
+
+        /**
+         * Wait for svn to exit after the end of its output and check the exit code.
+         */
+        private void finish() throws IOException {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            if (this.eof) {
+                return;
+            }
+            this.eof = true;
+            try {
+                if (this.timeout > 0) {
+                    long remaining = this.deadline - System.nanoTime();
+                    if (!this.process.waitFor(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+                        this.timedOut = true;
+                        this.process.destroyForcibly();
+                    }
+                    this.checkTimeout();
+                }
+                int exitCode = this.process.waitFor();
+                this.errorReader.join(1000);
+                if (this.watchdog != null) {
+                    this.watchdog.interrupt();
+                }
+                if (exitCode != 0) {
+                    throw this.fail("exited with code " + exitCode);
+                }
+            } catch (InterruptedException e) {
+                this.process.destroyForcibly();
+                throw this.fail("was interrupted");
+            }
+        }
+
+        private IOException fail(String reason) {
+            if (this.failure == null) {
+                StringBuilder message = new StringBuilder(this.commandLine + " " + reason);
+                synchronized (this.errors) {
+                    for (String line : this.errors) {
+                        message.append('\n').append(line);
+                    }
+                }
+                this.failure = new IOException(message.toString());
+            }
+            return this.failure;
+        }
+
+        /**
+         * Close the output. If svn has written all of it, the exit code is checked; otherwise the
+         * reader gave up early and svn is stopped.
+         */
+        public void close() throws IOException {
+            try {
+                if (!this.eof && this.failure == null) {
+                    // The parser may stop at the end of the document, before the end of the output; a
+                    // little more output is skipped, but a reader that gave up in between stops svn.
+                    byte[] rest = new byte[8192];
+                    int skipped = 0;
+                    int count;
+                    while ((count = this.read(rest, 0, rest.length)) != -1 && (skipped += count) < 65536) {
+                        ;
+                    }
+                    if (count != -1) {
+                        this.eof = true;
+                        this.process.destroyForcibly();
+                        if (this.watchdog != null) {
+                            this.watchdog.interrupt();
+                        }
+                    }
+                }
+            } finally {
+                super.close();
+            }
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+    }
+
+}
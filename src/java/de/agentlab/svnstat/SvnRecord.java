@@ -23,14 +23,24 @@ import java.util.List;
 
 public class SvnRecord {
 
+    private int          revision;
     private String       date;
     private String       time;
     private String       user;
     private int          added;
     private int          modified;
     private int          deleted;
+    private int          replaced;
     private List<String> files = new ArrayList<String>();
 
+    public int getRevision() {
+        return this.revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
     public String getDate() {
         return this.date;
     }
@@ -79,6 +89,14 @@ public class SvnRecord {
         this.modified = modified;
     }
 
+    public int getReplaced() {
+        return this.replaced;
+    }
+
+    public void setReplaced(int replaced) {
+        this.replaced = replaced;
+    }
+
     public void addFile(String filename){
         this.files.add(filename);
     }
@@ -20,21 +20,44 @@ package de.agentlab.svnstat;
 import org.jdom2.Content;
 import org.jdom2.Document;
 import org.jdom2.Element;
-import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
-import org.jdom2.xpath.XPath;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLStreamException;
 
 
 public class SvnStat {
 
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     private String repository;
     private String outdir;
     private String beginDate = null;
     private String endDate   = null;
     private String exclude = null;
+    private ExclusionFilter exclusions;
+    private boolean dom = false;
+    private int threads;
+    private int parseThreads;
+    private String backend;
+    private boolean renderCache = false;
+    private boolean incremental = false;
+    private String snapshot = null;
+    private List<ReportWindow> windows = null;
+    private boolean writeMetrics = false;
+    private String svnCommand;
+    private int timeout;
+    private Metrics metrics = new Metrics();
 
     public boolean init(CLI cli) {
         String configfile = cli.getStringOption("config");
@@ -46,7 +69,6 @@ public class SvnStat {
                 config = new PropertyResourceBundle(Graph.class.getResourceAsStream("SvnStat.properties"));
             }
             Config.init(config);
-            Graph.parseConfig();
         } catch (IOException e) {
             e.printStackTrace();
             return false;
@@ -62,91 +84,481 @@ public class SvnStat {
 
         this.beginDate = cli.getStringOption("begin");
         this.endDate = cli.getStringOption("end");
+        try {
+            if (this.beginDate != null) {
+                DateUtil.toEpochDayOnOrAfter(this.beginDate);
+            }
+            if (this.endDate != null) {
+                DateUtil.toEpochDayOnOrBefore(this.endDate);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Dates (-begin and -end options) must be given as yyyy-MM-dd: " + e.getMessage());
+            return false;
+        }
 
         this.exclude = cli.getStringOption("e");
+        try {
+            this.exclusions = new ExclusionFilter(this.exclude);
+        } catch (PatternSyntaxException e) {
+            System.out.println("Invalid exclusion pattern (-e option): " + e.getMessage());
+            return false;
+        }
+
+        this.dom = cli.getBooleanOption("dom");
+
+        this.threads = cli.getIntOption("threads", Runtime.getRuntime().availableProcessors());
+
+        this.parseThreads = cli.getIntOption("parseThreads", 1);
+
+        this.backend = Config.getProperty("Chart.backend", "jpeg").trim();
+        if (!this.backend.equals("jpeg") && !this.backend.equals("svg") && !this.backend.equals("json")) {
+            System.out.println("Invalid chart backend (Chart.backend): " + this.backend);
+            return false;
+        }
+
+        this.incremental = cli.getBooleanOption("incremental");
+
+        this.renderCache = cli.getBooleanOption("renderCache");
+
+        this.snapshot = cli.getStringOption("snapshot");
+
+        this.writeMetrics = cli.getBooleanOption("metrics");
+
+        this.svnCommand = cli.getStringOption("svn", "svn");
+        this.timeout = cli.getIntOption("timeout", 0);
+
+        String windows = cli.getStringOption("windows");
+        if (windows != null) {
+            try {
+                this.windows = ReportWindow.parse(windows);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid report windows (-windows option): " + e.getMessage());
+                return false;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
 
         return true;
     }
 
     public void run() throws FileNotFoundException {
-        InputStream in;
-        if (this.repository.startsWith("http")) {
-            in = this.getSvnLog(this.repository);
-        } else {
-            in = new FileInputStream(this.repository);
+        this.metrics.resetPeakHeap();
+
+        Checkpoint checkpoint = null;
+        int lastRevision = 0;
+        if (this.incremental) {
+            Metrics.Timer timer = this.metrics.start("checkpoint.load");
+            checkpoint = Checkpoint.load(this.outdir, this.repository, this.exclude);
+            timer.stop();
+            if (checkpoint != null) {
+                lastRevision = checkpoint.getLastRevision();
+                System.out.println("Reading revisions after " + lastRevision);
+            }
         }
 
         Stat stat = new Stat();
+        stat.setRenderer(new ChartRenderer(this.createChartBackend(), this.threads));
+        stat.getRenderer().setMetrics(this.metrics);
 
         try {
-            this.readXml(in, stat);
+            // Reading includes fetching the log when it comes from svn.
+            Metrics.Timer timer = this.metrics.start("read");
+            boolean complete;
+            if (Snapshot.isSnapshot(this.repository)) {
+                complete = this.readSnapshot(this.repository, stat, lastRevision);
+            } else if (!this.dom && !isRepository(this.repository) && !isGzip(this.repository)) {
+                complete = this.readXmlFile(this.repository, stat, lastRevision);
+            } else {
+                InputStream in = this.openLog(this.repository, lastRevision);
+                complete = this.readXml(in, stat, lastRevision);
+                if (complete) {
+                    // For svn, closing the log checks that svn succeeded.
+                    in.close();
+                } else {
+                    closeQuietly(in);
+                }
+            }
+            timer.stop();
+            if (!complete) {
+                System.out.println("The log could not be read completely; no report is written.");
+                return;
+            }
+            CommitStore store = stat.getStore();
+            long paths = 0;
+            for (int i = 0; i < store.size(); i++) {
+                paths += store.getFileCount(i);
+            }
+            this.metrics.setRead("read", store.size(), paths);
 
+            if (checkpoint != null) {
+                if (!Checkpoint.isNewestFirst(store)) {
+                    System.out.println("The log does not list the newest revisions first, so the checkpoint " +
+                        "cannot be added; no report is written.");
+                    return;
+                }
+                timer = this.metrics.start("checkpoint.add");
+                checkpoint.addTo(stat);
+                timer.stop();
+            }
+            if (this.incremental) {
+                timer = this.metrics.start("checkpoint.save");
+                Checkpoint.save(this.outdir, stat, this.repository, this.exclude);
+                timer.stop();
+            }
+
+            timer = this.metrics.start("aggregate");
             Collections.reverse(stat.getDates());
+            stat.getDateIndex();
+            timer.stop();
 
             stat.setDir(outdir);
             stat.setRepository(repository);
 
-            boolean hasFiles = stat.fileCount(beginDate, endDate);
+            if (this.windows != null) {
+                this.writeReports(stat);
+            } else if (this.writeReport(stat, beginDate, endDate)) {
+                timer = this.metrics.start("render");
+                stat.getRenderer().shutdown();
+                timer.stop();
 
-            if (!hasFiles) {
-                System.out.println("No commits to analyze.");
-                return;
+                timer = this.metrics.start("index");
+                this.writeIndexFile(stat);
+                timer.stop();
             }
 
-            stat.commitsPercentage(beginDate, endDate);
+            if (this.writeMetrics) {
+                this.metrics.print(new PrintWriter(System.out));
+                this.metrics.writeJson(stat.getDir() + Metrics.FILENAME, this.repository);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-            stat.commitsAllUsers(beginDate, endDate);
+    /**
+     * Create the report for a date range. The charts may still be rendered when this method
+     * returns.
+     * 
+     * @return <code>false</code> if there are no commits in the date range
+     */
+    private boolean writeReport(Stat stat, String beginDate, String endDate) {
+        Metrics.Timer timer = this.metrics.start("Stat.fileCount");
+        boolean hasFiles = stat.fileCount(beginDate, endDate);
+        timer.stop();
+
+        if (!hasFiles) {
+            System.out.println("No commits to analyze.");
+            return false;
+        }
+
+        timer = this.metrics.start("Stat.commitsPercentage");
+        stat.commitsPercentage(beginDate, endDate);
+        timer.stop();
+
+        timer = this.metrics.start("Stat.commitsAllUsers");
+        stat.commitsAllUsers(beginDate, endDate);
+        timer.stop();
 
-            for (Iterator<String> i = stat.getUsers().iterator(); i.hasNext();) {
-                String user = i.next();
+        for (Iterator<String> i = stat.getUsers().iterator(); i.hasNext();) {
+            String user = i.next();
 
-                stat.commitsPerUser(beginDate, endDate, user);
+            timer = this.metrics.start("Stat.commitsPerUser");
+            stat.commitsPerUser(beginDate, endDate, user);
+            timer.stop();
 
-                stat.changesPerUser(beginDate, endDate, user);
+            timer = this.metrics.start("Stat.changesPerUser");
+            stat.changesPerUser(beginDate, endDate, user);
+            timer.stop();
 
-                stat.commitTimesPerUser(beginDate, endDate, user);
+            timer = this.metrics.start("Stat.commitTimesPerUser");
+            stat.commitTimesPerUser(beginDate, endDate, user);
+            timer.stop();
 
-                stat.commitDaysPerUser(beginDate, endDate, user);
+            timer = this.metrics.start("Stat.commitDaysPerUser");
+            stat.commitDaysPerUser(beginDate, endDate, user);
+            timer.stop();
 
-                stat.modulesPerUser(beginDate, endDate, user);
+            timer = this.metrics.start("Stat.modulesPerUser");
+            stat.modulesPerUser(beginDate, endDate, user);
+            timer.stop();
+        }
+
+        timer = this.metrics.start("Stat.moduleActivityPerUser");
+        stat.moduleActivityPerUser();
+        timer.stop();
+
+        timer = this.metrics.start("Stat.moduleActivityPerUserPerDate");
+        stat.moduleActivityPerUserPerDate();
+        timer.stop();
+
+        timer = this.metrics.start("Stat.commitsTotal");
+        stat.commitsTotal(beginDate, endDate);
+        timer.stop();
+
+        return true;
+    }
+
+    /**
+     * Create the reports of all windows from the same records, each in a subdirectory of the output
+     * directory. Up to <code>-threads</code> windows are computed at the same time; their charts go
+     * to the shared renderer.
+     */
+    private void writeReports(Stat stat) throws InterruptedException, IOException {
+        final List<Stat> reports = new ArrayList<Stat>();
+        final boolean[] written = new boolean[this.windows.size()];
+        for (Iterator<ReportWindow> i = this.windows.iterator(); i.hasNext();) {
+            reports.add(stat.createWindow(this.outdir + "/" + i.next().getName()));
+        }
+
+        int workers = Math.max(1, Math.min(this.threads, this.windows.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < this.windows.size(); i++) {
+            final int index = i;
+            futures.add(executor.submit(new Runnable() {
+
+                public void run() {
+                    ReportWindow window = windows.get(index);
+                    System.out.println("Report " + window.getName());
+                    written[index] = writeReport(reports.get(index), window.getBeginDate(), window.getEndDate());
+                }
+            }));
+        }
+        executor.shutdown();
+        for (Iterator<Future<?>> i = futures.iterator(); i.hasNext();) {
+            try {
+                i.next().get();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+        Metrics.Timer timer = this.metrics.start("render");
+        stat.getRenderer().shutdown();
+        timer.stop();
+
+        timer = this.metrics.start("index");
+        for (int i = 0; i < reports.size(); i++) {
+            if (written[i]) {
+                this.writeIndexFile(reports.get(i));
             }
+        }
+        this.writeWindowIndexFile(stat, written);
+        timer.stop();
+    }
 
-            stat.moduleActivityPerUser();
-            stat.moduleActivityPerUserPerDate();
-            stat.commitsTotal(beginDate, endDate);
+    private InputStream openLog(String log, int lastRevision) throws IOException {
+        if (isRepository(log)) {
+            return this.getSvnLog(log, lastRevision);
+        } else if (isGzip(log)) {
+            return gunzip(new FileInputStream(log));
+        } else {
+            return new FileInputStream(log);
+        }
+    }
 
-            this.writeIndexFile(stat);
+    /**
+     * Check whether a log file is gzip compressed, by its extension or its first two bytes.
+     */
+    private static boolean isGzip(String log) throws IOException {
+        if (log.toLowerCase().endsWith(".gz")) {
+            return true;
+        }
+        File file = new File(log);
+        if (!file.isFile()) {
+            return false;
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Decompress a gzip compressed log while it is read. Inflating runs on a background thread, a few
+     * blocks ahead of the parser.
+     */
+    private static InputStream gunzip(InputStream in) throws IOException {
+        return new ReadAheadInputStream(new GZIPInputStream(in, GZIP_BUFFER_SIZE), GZIP_BUFFER_SIZE, 4);
+    }
+
+    private static boolean isRepository(String log) {
+        return log.startsWith("http") || log.startsWith("svn:") || log.startsWith("svn+") || log.startsWith("file:");
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // The error was already reported while reading.
+        }
+    }
+
+    /**
+     * Read the log and write it as a snapshot, without creating a report. All commits go into the
+     * snapshot; exclusions are applied when the snapshot is read.
+     */
+    public void writeSnapshot() throws IOException {
+        Stat stat = new Stat();
+        CheckedInputStream in;
+        InputStream log;
+        if (!isRepository(this.repository) && isGzip(this.repository)) {
+            // The snapshot records the hash of the file, not of the decompressed log.
+            in = new CheckedInputStream(new FileInputStream(this.repository), new CRC32());
+            log = gunzip(in);
+        } else {
+            in = new CheckedInputStream(this.openLog(this.repository, 0), new CRC32());
+            log = in;
+        }
+
+        LogReader reader = new LogReader(new ExclusionFilter(null));
+        try {
+            // The parser closes its input at the end of the document; keep it open to hash the rest.
+            reader.read(new FilterInputStream(log) {
+                public void close() {
+                }
+            }, stat);
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot read log " + this.repository + ": " + e.getMessage());
+        }
+        byte[] buffer = new byte[8192];
+        while (log.read(buffer) != -1) {
+            ;
+        }
+        while (in.read(buffer) != -1) {
+            ;
+        }
+        log.close();
+
+        Snapshot.write(this.snapshot, stat.getStore(), this.repository, in.getChecksum().getValue());
+        System.out.println("Wrote snapshot of " + stat.getStore().size() + " commits to " + this.snapshot);
+    }
+
+    /**
+     * Read a snapshot into a {@link Stat}. If the log the snapshot was created from has changed
+     * since, the log is read instead.
+     * 
+     * @param minRevision commits up to and including this revision are skipped
+     * 
+     * @return <code>false</code> if the snapshot or log could not be read completely
+     */
+    private boolean readSnapshot(String filename, Stat stat, int minRevision) throws IOException {
+        Snapshot snapshot = Snapshot.load(filename);
+        if (snapshot.isStale()) {
+            System.out.println("Snapshot " + filename + " is out of date, reading " + snapshot.getSource());
+            InputStream in = this.openLog(snapshot.getSource(), minRevision);
+            try {
+                return this.readXml(in, stat, minRevision);
+            } finally {
+                in.close();
+            }
+        }
+
+        CommitStore store = snapshot.getStore();
+        if (this.exclusions.isEmpty() && minRevision <= 0 && stat.getStore().size() == 0) {
+            stat.setStore(store);
+            return true;
+        }
+
+        if (minRevision > 0 && snapshot.getLastRevision() <= minRevision) {
+            return true;
+        }
+        int[] commits = snapshot.getCommitsAfter(minRevision);
+
+        // Decide once per distinct path whether it is excluded: 1 for excluded, 2 for included.
+        byte[] excluded = new byte[store.getPathDictionary().size()];
+        for (int k = 0; k < commits.length; k++) {
+            int i = commits[k];
+            boolean skip = false;
+            for (int j = 0; j < store.getFileCount(i) && !skip; j++) {
+                int pathId = store.getFileId(i, j);
+                if (excluded[pathId] == 0) {
+                    String path = store.getPathDictionary().get(pathId);
+                    excluded[pathId] = (byte) (this.exclusions.isExcluded(path) ? 1 : 2);
+                }
+                skip = excluded[pathId] == 1;
+            }
+            if (!skip) {
+                stat.addRecord(store.get(i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the log into a {@link Stat}.
+     * 
+     * @param minRevision entries up to and including this revision are skipped
+     * 
+     * @return <code>false</code> if the log could not be read completely
+     */
+    boolean readXml(InputStream in, Stat stat, int minRevision) throws IOException {
+        if (this.dom) {
+            return this.readXmlDom(in, stat, minRevision);
+        }
+        try {
+            LogReader reader = new LogReader(this.exclusions);
+            reader.setMinRevision(minRevision);
+            reader.read(in, stat);
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
+            return false;
         }
     }
 
-    private void readXml(InputStream in, Stat stat) throws IOException {
+    /**
+     * Read a log file with the {@link LogTokenizer}, in chunks on <code>-parseThreads</code> threads
+     * if more than one is given.
+     * 
+     * @param minRevision entries up to and including this revision are skipped
+     * 
+     * @return <code>false</code> if the log could not be read completely
+     */
+    private boolean readXmlFile(String filename, Stat stat, int minRevision) {
+        try {
+            if (this.parseThreads > 1) {
+                ParallelLogReader reader = new ParallelLogReader(this.exclusions, this.parseThreads);
+                reader.setMinRevision(minRevision);
+                reader.read(new File(filename), stat);
+            } else {
+                LogTokenizer tokenizer = new LogTokenizer(this.exclusions);
+                tokenizer.setMinRevision(minRevision);
+                tokenizer.read(new File(filename), stat);
+            }
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Read the log by building the complete JDOM document first. This needs memory in proportion to
+     * the size of the log; it is only used when the <code>-dom</code> option is given.
+     */
+    private boolean readXmlDom(InputStream in, Stat stat, int minRevision) throws IOException {
         SAXBuilder builder = new SAXBuilder();
+        PathClassifier paths = new PathClassifier();
         try {
             Document document = builder.build(in);
             for (Iterator<Content> i = document.getRootElement().getContent().iterator(); i.hasNext();) {
                 Content logEntry = i.next();
                 if (logEntry instanceof Element) {
 
-                    if (isExcludedCommit((Element)logEntry)) {
+                    int revision = LogReader.parseRevision(((Element) logEntry).getAttributeValue("revision"));
+                    if (minRevision > 0 && revision <= minRevision) {
+                        continue;
+                    }
+                    if (!classifyPaths((Element) logEntry, paths)) {
                         continue;
                     }
-
-                    String authorStr;
 
                     Element authorNode = ((Element) logEntry).getChild("author");
-                    if (authorNode != null) {
-                        authorStr = authorNode.getValue();
-                    } else {
-                        authorStr = "unknown";
-                    }
-                    String user;
-                    if (authorStr.indexOf("=") != -1) {
-                        user = authorStr.substring(authorStr.indexOf("=") + 1, authorStr.indexOf(",")).trim();
-                    } else {
-                      user = authorStr.trim();
-                    }
+                    String user = LogReader.parseUser(authorNode != null ? authorNode.getValue() : null);
 
                     String dateStr = ((Element) logEntry).getChild("date").getValue();
 
@@ -155,123 +567,114 @@ public class SvnStat {
                     String time = dateStr.trim().substring(index + 1, index + 9);
 
                     SvnRecord record = new SvnRecord();
-
-                    List nodes = XPath.selectNodes(logEntry, "paths/path[@action='A']");
-                    for (Iterator j = nodes.iterator(); j.hasNext();) {
-                        Element element = (Element) j.next();
-                        record.addFile(element.getValue());
-                    }
-                    int added = nodes.size();
-
-                    nodes = XPath.selectNodes(logEntry, "paths/path[@action='M']");
-                    for (Iterator j = nodes.iterator(); j.hasNext();) {
-                        Element element = (Element) j.next();
-                        record.addFile(element.getValue());
-                    }
-                    int modified = nodes.size();
-
-                    nodes = XPath.selectNodes(logEntry, "paths/path[@action='D']");
-                    for (Iterator j = nodes.iterator(); j.hasNext();) {
-                        Element element = (Element) j.next();
-                        record.addFile(element.getValue());
-                    }
-                    int deleted = nodes.size();
+                    record.setRevision(revision);
+                    paths.fill(record);
 
                     record.setDate(date);
                     record.setTime(time);
                     record.setUser(user.toLowerCase());
-                    record.setAdded(added);
-                    record.setModified(modified);
-                    record.setDeleted(deleted);
                     stat.addRecord(record);
                 }
             }
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
+            return false;
         }
     }
 
-    private List<String> getExclusions() {
-        List<String> excludes = new ArrayList<String>();
-
-        if (exclude != null) {
-            excludes.addAll(Arrays.asList(exclude.split(",")));
+    /**
+     * Walk the paths of a log entry once, sorting them by action and checking them against the
+     * exclusions.
+     * 
+     * @return <code>false</code> if the commit is excluded
+     */
+    private boolean classifyPaths(Element logEntry, PathClassifier paths) {
+        paths.clear();
+
+        Element pathsNode = logEntry.getChild("paths");
+        if (pathsNode == null) {
+            return true;
         }
+        for (Iterator<Element> j = pathsNode.getChildren("path").iterator(); j.hasNext();) {
+            Element element = j.next();
+            String file = element.getValue();
 
-        return excludes;
+            if (this.exclusions.isExcluded(file)) {
+                return false;
+            }
+            paths.add(element.getAttributeValue("action"), file);
+        }
+        return true;
     }
 
-    private boolean isExcludedCommit(Element logEntry) throws JDOMException {
-        boolean isExclude = false;
-        String file = "none";
-        List nodes = XPath.selectNodes(logEntry, "paths/path");
-        for (Iterator j = nodes.iterator(); j.hasNext();) {
-            Element element = (Element) j.next();
-            file = element.getValue();
-
-            for (String exclusion : getExclusions()) {
-                if (file.matches(exclusion)) {
-                    return true;
-                }
-            }
+    /**
+     * Start <code>svn log</code> for a repository. Reading or closing the returned stream fails if svn
+     * fails or runs longer than the <code>-timeout</code>.
+     * 
+     * @param lastRevision if greater than 0, only the revisions from HEAD down to this revision are
+     *        logged
+     */
+    public InputStream getSvnLog(String url, int lastRevision) throws IOException {
+        List<String> args = new ArrayList<String>();
+        args.add("log");
+        args.add("--verbose");
+        args.add("--xml");
+        args.add("--non-interactive");
+        if (lastRevision > 0) {
+            args.add("-r");
+            args.add("HEAD:" + lastRevision);
         }
-        return false;
+        args.add(url);
+
+        return new SvnProcess(this.svnCommand, this.timeout * 1000L).start(args);
     }
 
-    public InputStream getSvnLog(String url) {
+    /**
+     * Write the index pages of a report and the pages of its users.
+     */
+    public void writeIndexFile(Stat stat) {
         try {
-            String cmd = "svn log --verbose --xml " + url;
-            Process p = Runtime.getRuntime().exec(cmd);
-
-            return p.getInputStream();
+            this.createReportWriter(stat).write(stat.getDir(), stat.getUsers());
         } catch (IOException e) {
             e.printStackTrace();
         }
-
-        return null;
     }
 
-    public void writeIndexFile(Stat stat) {
-        String content = "";
-
-        String titleAndHeadline = Config.getProperty("Report.headline") + this.repository;
-
-        content += "<!doctype html public \"-//W3C//DTD HTML 4.0 Transitional//EN\">";
-        content += "<html>";
-        content += "<head>";
-        content += "<title>" + titleAndHeadline + "</title>";
-        content += "</head>";
-
-        content += "<body>";
-        content += "<h2>" + titleAndHeadline + "</h2>";
-
-        content += "<img src=\"Total_commits.jpg\">";
-        content += "<img src=\"File_Count.jpg\">";
-
-        content += "<br>";
-        content += "<img src=\"AllUsers_commits.jpg\">";
-        content += "<img src=\"Commit_Percentage.jpg\">";
-
-        for (Iterator<String> i = stat.getUsers().iterator(); i.hasNext();) {
-            String user = i.next();
-
-            content += "<h2>" + user + "</h2>";
-            content += "<img src=\"" + user + "_commits.jpg\">";
-            content += "<img src=\"" + user + "_changes.jpg\">";
-            content += "<img src=\"" + user + "_commitTimes.jpg\">";
-            content += "<img src=\"" + user + "_commitDays.jpg\">";
+    /**
+     * Write the index page of the output directory, linking the reports of the windows.
+     */
+    public void writeWindowIndexFile(Stat stat, boolean[] written) {
+        try {
+            this.createReportWriter(stat).writeWindowIndex(stat.getDir(), this.windows, written);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+    }
 
-        content += "</body>";
-        content += "</html>";
+    private ReportWriter createReportWriter(Stat stat) {
+        return new ReportWriter(Config.getProperty("Report.headline") + this.repository,
+            Config.getIntProperty("Report.usersPerPage", 50), stat.getRenderer().getExtension());
+    }
 
-        try {
-            PrintWriter p = new PrintWriter(new FileOutputStream(stat.getDir() + "/index.html"));
-            p.println(content);
-            p.close();
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+    /**
+     * Create the chart backend selected by <code>Chart.backend</code>. With
+     * <code>-renderCache</code>, charts that did not change since the last run are skipped; the json
+     * backend writes all charts into one file and always gets all of them.
+     */
+    private ChartBackend createChartBackend() {
+        ChartBackend result;
+        if (this.backend.equals("svg")) {
+            result = new SvgGraph(Graph.parseConfig());
+        } else if (this.backend.equals("json")) {
+            return new JsonGraph(Graph.parseConfig());
+        } else {
+            result = new Graph(Graph.parseConfig());
+        }
+        if (this.renderCache) {
+            result = new RenderCache(result, Graph.parseConfig());
         }
+        return result;
     }
 
     public static void main(String[] args) {
@@ -288,11 +691,15 @@ public class SvnStat {
 
         try {
             if (stat.init(cli)) {
-                stat.run();
+                if (stat.snapshot != null) {
+                    stat.writeSnapshot();
+                } else {
+                    stat.run();
+                }
             } else {
                 printUsage();
             }
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
         System.out.println("Total time:" + (System.currentTimeMillis() - start));
@@ -305,9 +712,32 @@ public class SvnStat {
                 "[-config <configfile>] " +
                 "[-begin <date>] " +
                 "[-end <date>]" +
-                "[-e <excludeRegex1,excludeRegex2...>] ");
+                "[-e <excludeRegex1,excludeRegex2...>] " +
+                "[-dom] " +
+                "[-threads <renderThreads>] " +
+                "[-parseThreads <parseThreads>] " +
+                "[-incremental] " +
+                "[-renderCache] " +
+                "[-snapshot <snapshotFile>] " +
+                "[-windows <name:begin:end,...|windowsFile>] " +
+                "[-metrics] " +
+                "[-svn <svnCommand>] " +
+                "[-timeout <seconds>]");
         System.out.println(
             "               (To use a logfile, the log must be retrieved using --verbose and --xml.)");
+        System.out.println(
+            "               (A logfile may be gzip compressed.)");
+        System.out.println(
+            "               (With -parseThreads, a logfile is read in chunks on several threads.)");
+        System.out.println(
+            "               (With -renderCache, charts that did not change since the last run are kept.)");
+        System.out.println(
+            "               (With -snapshot, the log is only saved as a binary snapshot for use with -r.)");
+        System.out.println(
+            "               (With -windows, one report per window is written to <outputDir>/<name>.)");
+        System.out.println(
+            "               (With -metrics, the time and memory of each phase are printed and written to "
+                + Metrics.FILENAME + ".)");
     }
 
 }
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2006, 2014 Juergen Lind (jli@agentlab.de), 2014 Joe Egan (J0e3gan@gmail.com).
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ *
+ */
+
+/*
+ * Draws the charts of a report written with Chart.backend = json. The data is read from
+ * charts.json next to this script; every <div class="chart" data-chart="name"> of the page gets a
+ * canvas with the chart of that name. Charts are drawn when they are scrolled into view.
+ */
+(function () {
+
+    var FONT = "Georgia, serif";
+    var SCALE_FONT = 10;
+    var AXIS_TITLE_FONT = 12;
+    var TITLE_FONT = 14;
+    var MARGIN = 10;
+
+    var scripts = document.getElementsByTagName("script");
+    var script = document.currentScript || scripts[scripts.length - 1];
+    var dataUrl = script.src.replace(/charts\.js$/, "charts.json");
+
+    function load(callback) {
+        var request = new XMLHttpRequest();
+        request.onreadystatechange = function () {
+            if (request.readyState === 4 && (request.status === 200 || request.status === 0)) {
+                callback(JSON.parse(request.responseText));
+            }
+        };
+        request.open("GET", dataUrl, true);
+        request.send();
+    }
+
+    function niceStep(rough) {
+        if (rough <= 0) {
+            return 1;
+        }
+        var power = Math.pow(10, Math.floor(Math.log(rough) / Math.LN10));
+        var fraction = rough / power;
+        if (fraction <= 1) {
+            return power;
+        } else if (fraction <= 2) {
+            return 2 * power;
+        } else if (fraction <= 5) {
+            return 5 * power;
+        }
+        return 10 * power;
+    }
+
+    function value(v) {
+        return String(Math.round(v * 100) / 100);
+    }
+
+    function font(size) {
+        return size + "px " + FONT;
+    }
+
+    function color(colors, i) {
+        return colors[i] || "#808080";
+    }
+
+    function drawTitle(g, chart) {
+        if (!chart.title) {
+            return MARGIN;
+        }
+        g.font = font(TITLE_FONT);
+        g.textAlign = "center";
+        g.textBaseline = "alphabetic";
+        g.fillText(chart.title, chart.width / 2, MARGIN + TITLE_FONT);
+        return 2 * MARGIN + TITLE_FONT + 4;
+    }
+
+    function drawLegend(g, chart, top, colors) {
+        var labels = chart.legend;
+        if (!labels || labels.length === 0) {
+            return 0;
+        }
+        g.font = font(SCALE_FONT);
+        var textWidth = 0;
+        for (var i = 0; i < labels.length; i++) {
+            textWidth = Math.max(textWidth, g.measureText(labels[i] || "").width);
+        }
+        var legendWidth = textWidth + 3 * MARGIN + SCALE_FONT;
+        var x = chart.width - legendWidth + MARGIN;
+        var y = top + Math.max(0, (chart.height - top - labels.length * (SCALE_FONT + 6)) / 2);
+        g.textAlign = "left";
+        g.textBaseline = "middle";
+        for (i = 0; i < labels.length; i++) {
+            g.fillStyle = colors[i];
+            g.fillRect(x, y, SCALE_FONT, SCALE_FONT);
+            g.fillStyle = "#000000";
+            g.fillText(labels[i] || "", x + SCALE_FONT + 4, y + SCALE_FONT / 2);
+            y += SCALE_FONT + 6;
+        }
+        return legendWidth;
+    }
+
+    function dashed(g, x1, y1, x2, y2) {
+        g.save();
+        g.lineWidth = 0.5;
+        if (g.setLineDash) {
+            g.setLineDash([0.5, 0.5, 1, 0.5]);
+        }
+        g.beginPath();
+        g.moveTo(x1, y1);
+        g.lineTo(x2, y2);
+        g.stroke();
+        g.restore();
+    }
+
+    function drawAxisChart(g, chart, labels, colors) {
+        var top = drawTitle(g, chart);
+        var legendWidth = drawLegend(g, chart, top, colors);
+        var data = chart.data;
+        var count = data.length > 0 ? data[0].length : 0;
+        var i, j;
+
+        var min = 0;
+        var max = 0;
+        for (j = 0; j < count; j++) {
+            var sum = 0;
+            for (i = 0; i < data.length; i++) {
+                if (chart.type === "stacked") {
+                    sum += data[i][j];
+                } else {
+                    min = Math.min(min, data[i][j]);
+                    max = Math.max(max, data[i][j]);
+                }
+            }
+            max = Math.max(max, sum);
+        }
+        var step;
+        if (chart.type === "line" && chart.yMin !== undefined && chart.yMin !== -1 && chart.yIncrement > 0) {
+            min = chart.yMin;
+            step = chart.yIncrement;
+        } else {
+            step = niceStep((max - min) / 5);
+            min = Math.floor(min / step) * step;
+        }
+        max = Math.max(min + step, Math.ceil(max / step) * step);
+
+        g.font = font(SCALE_FONT);
+        var scaleWidth = 0;
+        var v;
+        for (v = min; v <= max + step / 2; v += step) {
+            scaleWidth = Math.max(scaleWidth, g.measureText(value(v)).width);
+        }
+        var labelHeight = 0;
+        for (j = 0; j < labels.length; j++) {
+            labelHeight = Math.max(labelHeight, g.measureText(labels[j]).width);
+        }
+
+        var x0 = MARGIN + (chart.yTitle ? AXIS_TITLE_FONT + 6 : 0) + scaleWidth + 6;
+        var x1 = Math.max(x0 + 10, chart.width - legendWidth - MARGIN);
+        var y0 = top;
+        var y1 = Math.max(y0 + 10, chart.height - MARGIN - (chart.xTitle ? AXIS_TITLE_FONT + 6 : 0) - labelHeight - 6);
+        var slot = (x1 - x0) / Math.max(1, count);
+        var scale = (y1 - y0) / (max - min);
+
+        g.fillStyle = "#000000";
+        g.textAlign = "right";
+        g.textBaseline = "middle";
+        for (v = min; v <= max + step / 2; v += step) {
+            var y = y1 - (v - min) * scale;
+            dashed(g, x0, y, x1, y);
+            g.fillText(value(v), x0 - 4, y);
+        }
+
+        var every = Math.max(1, Math.ceil(SCALE_FONT * 1.2 / slot));
+        for (j = 0; j < labels.length && j < count; j += every) {
+            var x = x0 + (j + 0.5) * slot;
+            dashed(g, x, y0, x, y1);
+            g.save();
+            g.translate(x, y1 + 4);
+            g.rotate(-Math.PI / 2);
+            g.fillText(labels[j], 0, 0);
+            g.restore();
+        }
+
+        for (i = 0; i < data.length; i++) {
+            g.fillStyle = colors[i];
+            g.strokeStyle = colors[i];
+            if (chart.type === "line") {
+                g.beginPath();
+                for (j = 0; j < count; j++) {
+                    g[j === 0 ? "moveTo" : "lineTo"](x0 + (j + 0.5) * slot, y1 - (data[i][j] - min) * scale);
+                }
+                g.stroke();
+                if (slot >= 4) {
+                    for (j = 0; j < count; j++) {
+                        var px = x0 + (j + 0.5) * slot;
+                        var py = y1 - (data[i][j] - min) * scale;
+                        g.beginPath();
+                        g.moveTo(px, py - 3);
+                        g.lineTo(px + 3, py);
+                        g.lineTo(px, py + 3);
+                        g.lineTo(px - 3, py);
+                        g.fill();
+                    }
+                }
+                continue;
+            }
+            for (j = 0; j < count; j++) {
+                var d = data[i][j];
+                if (d <= 0) {
+                    continue;
+                }
+                var base = 0;
+                var bx;
+                var barWidth;
+                if (chart.type === "stacked") {
+                    for (var k = 0; k < i; k++) {
+                        base += data[k][j];
+                    }
+                    bx = x0 + j * slot + slot * 0.1;
+                    barWidth = slot * 0.8;
+                } else {
+                    barWidth = slot * 0.8 / data.length;
+                    bx = x0 + j * slot + slot * 0.1 + i * barWidth;
+                }
+                g.fillRect(bx, y1 - (base + d - min) * scale, barWidth, d * scale);
+            }
+        }
+
+        g.strokeStyle = "#000000";
+        g.fillStyle = "#000000";
+        g.lineWidth = 1;
+        g.beginPath();
+        g.moveTo(x0, y0);
+        g.lineTo(x0, y1);
+        g.lineTo(x1, y1);
+        g.stroke();
+        g.font = font(AXIS_TITLE_FONT);
+        g.textAlign = "center";
+        g.textBaseline = "alphabetic";
+        if (chart.xTitle) {
+            g.fillText(chart.xTitle, (x0 + x1) / 2, chart.height - MARGIN);
+        }
+        if (chart.yTitle) {
+            g.save();
+            g.translate(MARGIN + AXIS_TITLE_FONT, (y0 + y1) / 2);
+            g.rotate(-Math.PI / 2);
+            g.fillText(chart.yTitle, 0, 0);
+            g.restore();
+        }
+    }
+
+    function drawPieChart(g, chart, colors) {
+        var top = drawTitle(g, chart);
+        var legendWidth = drawLegend(g, chart, top, colors);
+        var data = chart.data[0];
+        var total = 0;
+        for (var i = 0; i < data.length; i++) {
+            total += Math.max(0, data[i]);
+        }
+        var cx = (chart.width - legendWidth) / 2;
+        var cy = top + (chart.height - top - MARGIN) / 2;
+        var radius = Math.min(chart.width - legendWidth, chart.height - top - MARGIN) / 2 - 2 * SCALE_FONT - MARGIN;
+        if (total <= 0 || radius <= 0) {
+            return;
+        }
+        g.font = font(SCALE_FONT);
+        g.textBaseline = "middle";
+        var angle = -Math.PI / 2;
+        for (i = 0; i < data.length; i++) {
+            if (data[i] <= 0) {
+                continue;
+            }
+            var sweep = data[i] / total * 2 * Math.PI;
+            g.fillStyle = colors[i];
+            g.beginPath();
+            g.moveTo(cx, cy);
+            g.arc(cx, cy, radius, angle, angle + sweep);
+            g.closePath();
+            g.fill();
+            var middle = angle + sweep / 2;
+            g.fillStyle = "#000000";
+            g.textAlign = Math.cos(middle) < 0 ? "right" : "left";
+            g.fillText(value(data[i]), cx + (radius + SCALE_FONT) * Math.cos(middle),
+                cy + (radius + SCALE_FONT) * Math.sin(middle));
+            angle += sweep;
+        }
+    }
+
+    function expand(row) {
+        if (!row.index) {
+            return row;
+        }
+        var result = [];
+        for (var i = 0; i < row.length; i++) {
+            result.push(0);
+        }
+        for (i = 0; i < row.index.length; i++) {
+            result[row.index[i]] = row.values[i];
+        }
+        return result;
+    }
+
+    function draw(element, report) {
+        var chart = report.charts[element.getAttribute("data-chart")];
+        if (!chart) {
+            return;
+        }
+        var canvas = document.createElement("canvas");
+        var ratio = window.devicePixelRatio || 1;
+        canvas.width = chart.width * ratio;
+        canvas.height = chart.height * ratio;
+        canvas.style.width = chart.width + "px";
+        canvas.style.height = chart.height + "px";
+        element.appendChild(canvas);
+
+        var g = canvas.getContext("2d");
+        g.scale(ratio, ratio);
+        g.fillStyle = "#ffffff";
+        g.fillRect(0, 0, chart.width, chart.height);
+        g.fillStyle = "#000000";
+
+        for (var j = 0; j < chart.data.length; j++) {
+            chart.data[j] = expand(chart.data[j]);
+        }
+        var colors = [];
+        for (var i = 0; i < chart.legend.length; i++) {
+            colors.push(chart.type === "line" ? "#0000ff" : color(report.colors, i));
+        }
+        if (chart.type === "pie") {
+            drawPieChart(g, chart, colors);
+        } else {
+            var labels = chart.labels || report.charts[chart.labelsOf].labels;
+            drawAxisChart(g, chart, labels, colors);
+        }
+    }
+
+    function start() {
+        var elements = document.querySelectorAll("div.chart");
+        if (elements.length === 0) {
+            return;
+        }
+        load(function (report) {
+            var i;
+            for (i = 0; i < elements.length; i++) {
+                var chart = report.charts[elements[i].getAttribute("data-chart")];
+                elements[i].style.display = "inline-block";
+                if (chart) {
+                    elements[i].style.width = chart.width + "px";
+                    elements[i].style.height = chart.height + "px";
+                }
+            }
+            if (!window.IntersectionObserver) {
+                for (i = 0; i < elements.length; i++) {
+                    draw(elements[i], report);
+                }
+                return;
+            }
+            var observer = new IntersectionObserver(function (entries) {
+                for (var j = 0; j < entries.length; j++) {
+                    if (entries[j].isIntersecting) {
+                        observer.unobserve(entries[j].target);
+                        draw(entries[j].target, report);
+                    }
+                }
+            }, { rootMargin: "200px" });
+            for (i = 0; i < elements.length; i++) {
+                observer.observe(elements[i]);
+            }
+        });
+    }
+
+    if (document.readyState === "loading") {
+        document.addEventListener("DOMContentLoaded", start);
+    } else {
+        start();
+    }
+})();